@@ -0,0 +1,41 @@
+package com.github.quanticc.faktory;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FaktoryDispatchBenchmark {
+
+    @Param({"10", "100", "500"})
+    private int registeredTypes;
+
+    private FaktoryClient client;
+    private FaktoryJob job;
+
+    @Setup
+    public void setUp() throws URISyntaxException {
+        client = FaktoryClient.builder()
+                .withWorkerId("benchmark")
+                .build();
+        for (int i = 0; i < registeredTypes; i++) {
+            client.register("Job" + i, job -> {
+            });
+        }
+        job = FaktoryJob.builder()
+                .withJobId("0123456789abcdef")
+                .withJobType("Job" + (registeredTypes / 2))
+                .build();
+    }
+
+    @Benchmark
+    public FaktoryTask[] lookupHandlers() {
+        return client.getRegisteredTasks(job);
+    }
+}
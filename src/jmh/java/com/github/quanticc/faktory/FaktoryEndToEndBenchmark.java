@@ -0,0 +1,87 @@
+package com.github.quanticc.faktory;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Push, fetch, execute and ACK a batch of jobs through {@link FakeFaktoryServer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FaktoryEndToEndBenchmark {
+
+    @Param({"1000"})
+    private int batchSize;
+
+    @Param({"20"})
+    private int concurrency;
+
+    @Param({"0"})
+    private long serverLatencyMillis;
+
+    @Param({"blocking", "nio"})
+    private String transport;
+
+    private FakeFaktoryServer server;
+    private FaktoryClient client;
+    private Thread runner;
+    private final Semaphore processed = new Semaphore(0);
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = new FakeFaktoryServer().withLatency(serverLatencyMillis).start();
+        client = FaktoryClient.builder()
+                .withUri(server.getUri())
+                .withWorkerId("benchmark")
+                .withConcurrency(concurrency)
+                .withTransportOptions(FaktoryTransportOptions.builder()
+                        .withTransport("nio".equals(transport) ? FaktoryTransport.NIO : FaktoryTransport.BLOCKING)
+                        .build())
+                .build();
+        client.register("BenchmarkJob", job -> processed.release());
+        runner = new Thread(() -> {
+            try {
+                client.run();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, "benchmark-worker");
+        runner.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        client.disconnect(false, 5);
+        runner.join(TimeUnit.SECONDS.toMillis(10));
+        server.close();
+    }
+
+    @Benchmark
+    public void pushFetchAck() throws Exception {
+        List<FaktoryJob> jobs = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            jobs.add(FaktoryJob.builder()
+                    .withJobId(String.valueOf(sequence.incrementAndGet()))
+                    .withJobType("BenchmarkJob")
+                    .withArgs(Collections.singletonList(i))
+                    .build());
+        }
+        int reported = server.count("ACK") + server.count("FAIL");
+        client.submitAll(jobs);
+        processed.acquire(batchSize);
+        if (!server.awaitReports(reported + batchSize, TimeUnit.MINUTES.toMillis(1))) {
+            throw new IllegalStateException("Jobs were not acknowledged in time");
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.quanticc.faktory;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to drain a burst of blocking jobs with each executor strategy, at the client concurrency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FaktoryExecutorStrategyBenchmark {
+
+    @Param({"fixed", "workStealing", "virtualThreads"})
+    private String strategy;
+
+    @Param({"200"})
+    private int concurrency;
+
+    @Param({"5000"})
+    private int jobs;
+
+    @Param({"5"})
+    private long sleepMillis;
+
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        FaktoryExecutorStrategy executorStrategy;
+        switch (strategy) {
+            case "workStealing":
+                executorStrategy = FaktoryExecutorStrategy.workStealing();
+                break;
+            case "virtualThreads":
+                executorStrategy = FaktoryExecutorStrategy.virtualThreads();
+                break;
+            default:
+                executorStrategy = FaktoryExecutorStrategy.fixed();
+        }
+        executor = executorStrategy.create(concurrency);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void sleepingJobs() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(jobs);
+        // like the client, never run more than concurrency jobs at once
+        Semaphore slots = new Semaphore(concurrency);
+        for (int i = 0; i < jobs; i++) {
+            slots.acquire();
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    slots.release();
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.quanticc.faktory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FaktoryJobSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private ObjectWriter jobWriter;
+    private ObjectReader jobReader;
+    private FaktoryJob job;
+    private byte[] json;
+    private byte[] largeJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = new ObjectMapper();
+        jobWriter = objectMapper.writerFor(FaktoryJob.class);
+        jobReader = objectMapper.readerFor(FaktoryJob.class);
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("userId", 123456);
+        payload.put("email", "someone@example.com");
+        payload.put("tags", Arrays.asList("a", "b", "c"));
+        job = FaktoryJob.builder()
+                .withJobId("0123456789abcdef")
+                .withJobType("SendEmail")
+                .withArgs(Arrays.asList(payload, 42, "text"))
+                .withQueue("mailers")
+                .withRetry(5)
+                .withReserveFor(600)
+                .putCustom("trace", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01")
+                .build();
+        json = jobWriter.writeValueAsBytes(job);
+        List<Object> rows = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            rows.add(payload);
+        }
+        largeJson = jobWriter.writeValueAsBytes(FaktoryJob.builder()
+                .withJobId("0123456789abcdef")
+                .withJobType("Import")
+                .withArgs(rows)
+                .build());
+    }
+
+    @Benchmark
+    public String serialize() throws IOException {
+        return jobWriter.writeValueAsString(job);
+    }
+
+    @Benchmark
+    public FaktoryJob deserialize() throws IOException {
+        return jobReader.readValue(json);
+    }
+
+    @Benchmark
+    public FaktoryJob deserializeLazy() throws IOException {
+        return FaktoryJob.lazy(objectMapper, json, 0, json.length);
+    }
+
+    /**
+     * A dispatcher that only looks at the job type of a job with a large payload.
+     */
+    @Benchmark
+    public String dispatchLarge() throws IOException {
+        FaktoryJob job = jobReader.readValue(largeJson);
+        return job.getJobType();
+    }
+
+    @Benchmark
+    public String dispatchLargeLazy() throws IOException {
+        return FaktoryJob.lazy(objectMapper, largeJson, 0, largeJson.length).getJobType();
+    }
+
+    @Benchmark
+    public FaktoryJob roundTrip() throws IOException {
+        return jobReader.readValue(jobWriter.writeValueAsBytes(job));
+    }
+}
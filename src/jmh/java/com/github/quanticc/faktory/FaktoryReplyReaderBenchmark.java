@@ -0,0 +1,91 @@
+package com.github.quanticc.faktory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FaktoryReplyReaderBenchmark {
+
+    @Param({"64", "4096", "102400"})
+    private int payloadSize;
+
+    private FaktoryReplyReader reader;
+    private ObjectReader jobReader;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        StringBuilder padding = new StringBuilder();
+        while (padding.length() < payloadSize) {
+            padding.append("0123456789abcdef");
+        }
+        FaktoryJob job = FaktoryJob.builder()
+                .withJobId("0123456789abcdef")
+                .withJobType("BenchmarkJob")
+                .withArgs(Collections.singletonList(padding.substring(0, payloadSize)))
+                .build();
+        byte[] json = objectMapper.writeValueAsBytes(job);
+        byte[] header = ("$" + json.length + "\r\n").getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer frame = ByteBuffer.allocate(header.length + json.length + 2);
+        frame.put(header).put(json).put((byte) '\r').put((byte) '\n');
+        reader = new FaktoryReplyReader(new RepeatingChannel(frame.array()));
+        jobReader = objectMapper.readerFor(FaktoryJob.class);
+    }
+
+    @Benchmark
+    public int readBulkReply() throws IOException {
+        reader.read();
+        return reader.length();
+    }
+
+    @Benchmark
+    public FaktoryJob readAndBindJob() throws IOException {
+        reader.read();
+        return jobReader.readValue(reader.array(), reader.offset(), reader.length());
+    }
+
+    /**
+     * Replays the same frame forever, delivering at most one TCP-sized segment per read.
+     */
+    static class RepeatingChannel implements ReadableByteChannel {
+
+        private static final int SEGMENT_SIZE = 1460;
+
+        private final byte[] frame;
+        private int position;
+
+        RepeatingChannel(byte[] frame) {
+            this.frame = frame;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            int n = Math.min(Math.min(SEGMENT_SIZE, dst.remaining()), frame.length - position);
+            dst.put(frame, position, n);
+            position = (position + n) % frame.length;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
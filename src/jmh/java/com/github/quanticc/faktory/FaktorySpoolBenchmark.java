@@ -0,0 +1,73 @@
+package com.github.quanticc.faktory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Latency of appending a submitted job to the spool, while a drainer empties it into a sink that acknowledges
+ * every push right away.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FaktorySpoolBenchmark {
+
+    private static final CompletableFuture<Void> ACKNOWLEDGED = CompletableFuture.completedFuture(null);
+
+    @Param({"false", "true"})
+    public boolean sync;
+
+    private Path directory;
+    private FaktorySpool spool;
+    private byte[] job;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("faktory-spool-benchmark");
+        spool = FaktorySpool.open(FaktorySpoolOptions.builder()
+                .withDirectory(directory)
+                .withMaxSegments(1024)
+                .withSync(sync)
+                .build(), FaktorySpoolBenchmark::acknowledge);
+        spool.start();
+        job = new ObjectMapper().writeValueAsBytes(FaktoryJob.builder()
+                .withJobId("0123456789abcdef")
+                .withJobType("SendEmail")
+                .withArgs(Collections.singletonList("someone@example.com"))
+                .build());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        spool.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void append() throws IOException {
+        spool.append(job);
+    }
+
+    private static CompletableFuture<?>[] acknowledge(Collection<String> jobs) {
+        CompletableFuture<?>[] results = new CompletableFuture<?>[jobs.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = ACKNOWLEDGED;
+        }
+        return results;
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.quanticc.faktory;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from building a worker to its first FETCH reaching {@link FakeFaktoryServer}, with and without preconnected
+ * report connections.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FaktoryStartupBenchmark {
+
+    @Param({"0", "4"})
+    private int preconnect;
+
+    @Param({"2"})
+    private long serverLatencyMillis;
+
+    private FakeFaktoryServer server;
+    private FaktoryClient client;
+    private Thread runner;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = new FakeFaktoryServer().withLatency(serverLatencyMillis).withFetchTimeout(10).start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @TearDown(Level.Invocation)
+    public void stopWorker() throws Exception {
+        client.disconnect(true, 1);
+        runner.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    @Benchmark
+    public int startUntilFirstFetch() throws Exception {
+        int fetches = server.count("FETCH");
+        client = FaktoryClient.builder()
+                .withUri(server.getUri())
+                .withWorkerId("benchmark")
+                .withConnectionPoolSize(4)
+                .withPreconnect(preconnect)
+                .withShutdownHook(false)
+                .build();
+        client.register("BenchmarkJob", job -> {
+        });
+        runner = new Thread(() -> {
+            try {
+                client.run();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, "benchmark-worker");
+        runner.start();
+        while (server.count("FETCH") == fetches) {
+            Thread.yield();
+        }
+        return fetches;
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.quanticc.faktory;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a fetched job and binds its args to a POJO, through the untyped {@code List<Object>} and
+ * {@code convertValue} versus the cached typed reader used by {@code register(jobType, argsType, action)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FaktoryTypedArgsBenchmark {
+
+    private ObjectMapper objectMapper;
+    private ObjectReader jobReader;
+    private ObjectReader argsReader;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = new ObjectMapper();
+        jobReader = objectMapper.readerFor(FaktoryJob.class);
+        argsReader = objectMapper.readerFor(Payload.class).with(DeserializationFeature.UNWRAP_SINGLE_VALUE_ARRAYS);
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("userId", 123456);
+        payload.put("email", "someone@example.com");
+        payload.put("tags", Arrays.asList("a", "b", "c"));
+        FaktoryJob job = FaktoryJob.builder()
+                .withJobId("0123456789abcdef")
+                .withJobType("SendEmail")
+                .withArgs(Collections.singletonList(payload))
+                .build();
+        json = objectMapper.writeValueAsBytes(job);
+    }
+
+    @Benchmark
+    public Payload untyped() throws IOException {
+        FaktoryJob job = jobReader.readValue(json);
+        return objectMapper.convertValue(job.getArgs().get(0), Payload.class);
+    }
+
+    @Benchmark
+    public Payload typed() throws IOException {
+        FaktoryJob job = jobReader.readValue(json);
+        return argsReader.readValue(job.getArgsParser());
+    }
+
+    public static class Payload {
+
+        public long userId;
+        public String email;
+        public List<String> tags;
+    }
+}
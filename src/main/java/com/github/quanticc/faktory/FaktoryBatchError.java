@@ -0,0 +1,35 @@
+package com.github.quanticc.faktory;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Some jobs of a {@code submitAll} batch were not pushed. {@link #getFailures()} is keyed by job instance, as
+ * {@link FaktoryJob} does not override {@code equals}, so an instance passed more than once appears once, with the
+ * cause of its first failure. {@link #getFailedCount()} counts every failed push.
+ */
+public class FaktoryBatchError extends FaktoryConnectionError {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Map<FaktoryJob, Throwable> failures;
+    private final int failedCount;
+
+    public FaktoryBatchError(Map<FaktoryJob, Throwable> failures, int total) {
+        this(failures, failures.size(), total);
+    }
+
+    public FaktoryBatchError(Map<FaktoryJob, Throwable> failures, int failedCount, int total) {
+        super(failedCount + " of " + total + " jobs could not be pushed");
+        this.failures = Collections.unmodifiableMap(failures);
+        this.failedCount = failedCount;
+    }
+
+    public Map<FaktoryJob, Throwable> getFailures() {
+        return failures;
+    }
+
+    public int getFailedCount() {
+        return failedCount;
+    }
+}
@@ -1,46 +1,99 @@
 package com.github.quanticc.faktory;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.github.quanticc.faktory.FaktoryConnectionPool.Channel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.net.InetAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
 public class FaktoryClient {
 
     private static final Logger log = LoggerFactory.getLogger(FaktoryClient.class);
+    private static final FutureFaktoryTask WAKE_UP = new FutureFaktoryTask(null, null, null);
+    private static final long PREFETCH_STOP_MILLIS = 3000;
+    private static final int STATE_RUNNING = 0;
+    private static final int STATE_QUIET = 1;
+    private static final int STATE_TERMINATE = 2;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final ThreadLocal<MessageDigest> SHA_256 = new ThreadLocal<>();
+    private static final JsonStringEncoder JSON_STRING_ENCODER = new JsonStringEncoder();
 
-    private final FaktoryConnection connection;
+    private final FaktoryConnectionPool pool;
+    private final FaktoryPushPipeline pushPipeline;
     private final ObjectMapper objectMapper;
+    private final ObjectReader jobReader;
+    private final FaktoryConnection.BulkReader<FaktoryJob> fetchReader;
+    private final ObjectReader stateReader;
     private final String workerId;
     private final int concurrency;
     private final long heartbeatInterval;
     private final List<String> queues;
     private final String password;
+    private final FaktoryExecutorStrategy executorStrategy;
+    private final FaktoryFetchStrategy fetchStrategy;
+    private final FaktoryMetrics metrics;
+    private final boolean timed;
 
-    private final List<FaktoryTask> tasks = new ArrayList<>();
-    private final List<FutureFaktoryTask> pending = new ArrayList<>();
+    private final FaktoryTaskRegistry registry;
+    private final Set<FutureFaktoryTask> pending = ConcurrentHashMap.newKeySet();
+    private final BlockingQueue<FutureFaktoryTask> completed = new LinkedBlockingQueue<>();
+    private final List<FutureFaktoryTask> reportBatch = new ArrayList<>();
+    private final Deque<String> unsentReports = new ArrayDeque<>();
+    // jobs of the unsent reports, only tracked for consumer interceptors
+    private final Deque<QueuedReport> unsentReportJobs = new ArrayDeque<>();
+    private final int reportBatchSize;
+    private final long reportFlushNanos;
+    private final FaktoryPrefetcher prefetcher;
+    private final FaktorySpool spool;
+    private final long reconnectDelay;
+    private final long maxReconnectDelay;
+    private final int preconnect;
+    private final FaktoryProducerInterceptor producerInterceptor;
+    private final FaktoryConsumerInterceptor consumerInterceptor;
+    private final FaktoryDedupeCache dedupeCache;
+    private final Function<FaktoryJob, String> dedupeKey;
+    // last state received from a heartbeat, only ever moves from running to quiet to terminate
+    private final AtomicInteger workerState = new AtomicInteger(STATE_RUNNING);
 
     private ExecutorService executor;
-    private Instant lastHeartbeat;
-    private boolean disconnecting;
+    private ScheduledExecutorService timeoutScheduler;
+    private ScheduledExecutorService heartbeatScheduler;
+    // concurrency limit bookkeeping of tasks with a max concurrency, per client as tasks can be shared by a group
+    private final Map<FaktoryTask, TaskSlots> taskSlots = new HashMap<>();
+    private int parked;
+    private int reconnectAttempts;
+    private volatile boolean disconnecting;
     private boolean quiet;
-    private Instant disconnectAfter;
+    private long disconnectDeadline;
+    private long reportBatchStarted;
+    private volatile String helloPayload;
 
     public FaktoryClient(Builder builder) throws URISyntaxException {
         URI uri;
@@ -51,9 +104,21 @@ public class FaktoryClient {
             uri = builder.uri;
         }
 
-        this.connection = new FaktoryConnection(uri);
+        this.metrics = Objects.requireNonNull(builder.metrics);
+        this.timed = metrics.isEnabled();
+        this.pool = new FaktoryConnectionPool(uri, builder.connectionPoolSize, this::connect, metrics,
+                Objects.requireNonNull(builder.transportOptions));
         this.objectMapper = Objects.requireNonNull(builder.objectMapper);
+        this.jobReader = objectMapper.readerFor(FaktoryJob.class);
+        this.fetchReader = builder.lazyPayloads
+                ? (bytes, offset, length) -> FaktoryJob.lazy(objectMapper, bytes, offset, length)
+                : jobReader::readValue;
+        this.stateReader = objectMapper.readerFor(new TypeReference<Map<String, String>>() {
+        });
+        this.pushPipeline = new FaktoryPushPipeline(pool, objectMapper.writerFor(FaktoryJob.class),
+                builder.maxPushesInFlight);
         this.workerId = Objects.requireNonNull(builder.workerId);
+        this.registry = builder.registry != null ? builder.registry : new FaktoryTaskRegistry();
         this.concurrency = Math.max(1, builder.concurrency);
         this.heartbeatInterval = Math.max(1, builder.heartbeatInterval);
 
@@ -65,17 +130,46 @@ public class FaktoryClient {
 
         this.queues = queues;
         this.password = builder.password;
+        this.executorStrategy = Objects.requireNonNull(builder.executorStrategy);
+        this.reportBatchSize = Math.max(1, builder.reportBatchSize);
+        this.reportFlushNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, builder.reportFlushInterval));
+        this.reconnectDelay = Math.max(1, builder.reconnectDelay);
+        this.maxReconnectDelay = Math.max(this.reconnectDelay, builder.maxReconnectDelay);
+        this.preconnect = Math.max(0, builder.preconnect);
+        this.producerInterceptor = FaktoryInterceptorChain.producer(builder.producerInterceptors);
+        this.consumerInterceptor = FaktoryInterceptorChain.consumer(builder.consumerInterceptors);
+        this.dedupeCache = builder.dedupeCache;
+        this.dedupeKey = builder.dedupeKey;
+        this.executorStrategy.validate(this.concurrency);
+        FaktoryFetchStrategy fetchStrategy = Objects.requireNonNull(builder.fetchStrategy);
+        this.fetchStrategy = builder.emptyQueueBackoff > 0
+                ? FaktoryFetchStrategy.emptyQueueBackoff(fetchStrategy, builder.emptyQueueBackoff)
+                : fetchStrategy;
+        this.prefetcher = builder.prefetch > 0 ? new FaktoryPrefetcher(pool, this::fetch, builder.prefetch,
+                builder.reservationTimeout, () -> completed.offer(WAKE_UP), this::returnLateJob) : null;
+        if (builder.spoolOptions != null) {
+            try {
+                this.spool = FaktorySpool.open(builder.spoolOptions, pushPipeline::pushAllSerialized);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to open spool in " + builder.spoolOptions.getDirectory(), e);
+            }
+            this.spool.start();
+        } else {
+            this.spool = null;
+        }
 
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            if (!disconnecting) {
-                log.info("Shutdown: waiting up to 15 seconds for workers to finish current tasks");
-                try {
-                    disconnect(false, 15);
-                } catch (IOException | FaktoryConnectionError e) {
-                    log.warn("Unable to disconnect", e);
+        if (builder.shutdownHook) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                if (!disconnecting) {
+                    log.info("Shutdown: waiting up to 15 seconds for workers to finish current tasks");
+                    try {
+                        disconnect(false, 15);
+                    } catch (IOException | FaktoryConnectionError e) {
+                        log.warn("Unable to disconnect", e);
+                    }
                 }
-            }
-        }));
+            }));
+        }
     }
 
     public static Builder builder() {
@@ -89,188 +183,839 @@ public class FaktoryClient {
 
     private FaktoryConnectOptions buildConnectOptions() {
         FaktoryConnectOptions options = new FaktoryConnectOptions();
-        try {
-            options.setHostname(InetAddress.getLocalHost().toString());
-        } catch (UnknownHostException e) {
-        }
+        options.setHostname(LocalHost.NAME);
         options.setWid(workerId);
         return options;
     }
 
+    /**
+     * The {@code HELLO} payload without a password hash, built once and reused by every connection.
+     */
+    private String helloPayload() throws IOException {
+        String payload = helloPayload;
+        if (payload == null) {
+            payload = objectMapper.writeValueAsString(buildConnectOptions());
+            helloPayload = payload;
+        }
+        return payload;
+    }
+
+    /**
+     * Pushes a job and waits for its reply, or with a spool configured, appends it to the spool to be pushed in the
+     * background.
+     */
     public void submit(FaktoryJob job) throws IOException, FaktoryConnectionError, NoSuchAlgorithmException {
-        if (!connection.isConnected()) {
-            connect();
+        if (producerInterceptor == null) {
+            push(job);
+            return;
+        }
+        FaktoryJob intercepted = producerInterceptor.beforePush(job);
+        long start = System.nanoTime();
+        try {
+            push(intercepted);
+        } catch (IOException | FaktoryConnectionError | RuntimeException e) {
+            producerInterceptor.afterPush(intercepted, e, System.nanoTime() - start);
+            throw e;
         }
-        connection.send("PUSH " + objectMapper.writeValueAsString(job));
+        producerInterceptor.afterPush(intercepted, null, System.nanoTime() - start);
     }
 
-    private void connect() throws IOException, FaktoryConnectionError, NoSuchAlgorithmException {
-        FaktoryHandshake handshake = objectMapper.readValue(connection.handshake(), FaktoryHandshake.class);
-        if (handshake.getVersion() != 2) {
-            throw new FaktoryConnectionError("Unsupported version: " + handshake.getVersion());
+    private void push(FaktoryJob job) throws IOException, FaktoryConnectionError {
+        if (spool != null) {
+            spool.append(objectMapper.writeValueAsBytes(job));
+            return;
         }
-        FaktoryConnectOptions hello = buildConnectOptions();
-        if (handshake.getNonce() != null && password != null) {
-            hello.setPasswordHash(sha256(password + handshake.getNonce(), handshake.getIterations()));
+        String message = "PUSH " + objectMapper.writeValueAsString(job);
+        pool.execute(Channel.REPORT, connection -> connection.send(message));
+    }
+
+    /**
+     * Pushes a job without waiting for its reply. Blocks only while the in-flight push limit is reached. With a
+     * spool configured, the result completes once the job is appended to it.
+     */
+    public CompletableFuture<Void> submitAsync(FaktoryJob job) {
+        if (producerInterceptor == null) {
+            return pushAsync(job);
+        }
+        FaktoryJob intercepted = producerInterceptor.beforePush(job);
+        long start = System.nanoTime();
+        return pushAsync(intercepted).whenComplete((ignored, error) ->
+                producerInterceptor.afterPush(intercepted, error, System.nanoTime() - start));
+    }
+
+    private CompletableFuture<Void> pushAsync(FaktoryJob job) {
+        if (spool != null) {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            try {
+                spool.append(objectMapper.writeValueAsBytes(job));
+                result.complete(null);
+            } catch (IOException e) {
+                result.completeExceptionally(e);
+            }
+            return result;
+        }
+        return pushPipeline.push(job);
+    }
+
+    /**
+     * Consumes jobs as a Reactive Streams publisher instead of {@link #run()}: each job the subscriber requests is
+     * fetched and delivered with a handle to ACK or FAIL it, which can be completed from any thread. It must not be
+     * combined with {@link #run()} on the same client.
+     */
+    public FaktoryJobPublisher publisher() {
+        return new FaktoryJobPublisher(this, reportBatchSize);
+    }
+
+    /**
+     * The spool backing {@link #submit(FaktoryJob)}, or {@code null} if none was configured. Producers that never
+     * call {@link #run()} should close it when done.
+     */
+    public FaktorySpool getSpool() {
+        return spool;
+    }
+
+    /**
+     * Pushes all jobs pipelined on a single connection and waits for every reply.
+     *
+     * @throws FaktoryBatchError if any job was rejected or could not be sent, with the cause of each failure by job
+     *                           instance
+     */
+    public void submitAll(Collection<FaktoryJob> jobs) throws FaktoryConnectionError {
+        Collection<FaktoryJob> pushed = jobs;
+        long start = 0;
+        if (producerInterceptor != null) {
+            List<FaktoryJob> intercepted = new ArrayList<>(jobs.size());
+            for (FaktoryJob job : jobs) {
+                intercepted.add(producerInterceptor.beforePush(job));
+            }
+            pushed = intercepted;
+            start = System.nanoTime();
+        }
+        CompletableFuture<?>[] results = pushPipeline.pushAll(pushed);
+        Map<FaktoryJob, Throwable> failures = new LinkedHashMap<>();
+        int failed = 0;
+        int i = 0;
+        for (FaktoryJob job : pushed) {
+            Throwable error = null;
+            try {
+                results[i++].get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error = e;
+            } catch (ExecutionException e) {
+                error = e.getCause();
+            }
+            if (error != null) {
+                failures.putIfAbsent(job, error);
+                failed++;
+            }
+            if (producerInterceptor != null) {
+                producerInterceptor.afterPush(job, error, System.nanoTime() - start);
+            }
+        }
+        if (!failures.isEmpty()) {
+            throw new FaktoryBatchError(failures, failed, jobs.size());
+        }
+    }
+
+    private void connect(FaktoryConnection connection) throws IOException, FaktoryConnectionError {
+        try {
+            FaktoryHandshake handshake = objectMapper.readValue(connection.handshake(), FaktoryHandshake.class);
+            if (handshake.getVersion() != 2) {
+                throw new FaktoryHandshakeError("Unsupported version: " + handshake.getVersion());
+            }
+            if (handshake.getNonce() == null || password == null) {
+                connection.connect(helloPayload());
+                return;
+            }
+            FaktoryConnectOptions hello = buildConnectOptions();
+            try {
+                hello.setPasswordHash(sha256(password + handshake.getNonce(), handshake.getIterations()));
+            } catch (GeneralSecurityException e) {
+                throw new FaktoryHandshakeError("Unable to hash password: " + e.getMessage());
+            }
+            connection.connect(objectMapper.writeValueAsString(hello));
+        } catch (FaktoryHandshakeError e) {
+            throw e;
+        } catch (FaktoryConnectionError e) {
+            throw new FaktoryHandshakeError(e.getMessage());
         }
-        connection.connect(objectMapper.writeValueAsString(hello));
     }
 
-    private String sha256(String plaintext, int iterations) throws NoSuchAlgorithmException {
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    static String sha256(String plaintext, int iterations) throws GeneralSecurityException {
+        MessageDigest digest = SHA_256.get();
+        if (digest == null) {
+            digest = MessageDigest.getInstance("SHA-256");
+            SHA_256.set(digest);
+        }
         byte[] encoded = digest.digest(plaintext.getBytes(StandardCharsets.UTF_8));
         for (int i = 1; i < iterations; i++) {
-            encoded = digest.digest(encoded);
+            digest.update(encoded);
+            digest.digest(encoded, 0, encoded.length);
         }
         return bytesToHex(encoded);
     }
 
     private static String bytesToHex(byte[] hash) {
-        StringBuilder hexString = new StringBuilder();
-        for (byte b : hash) {
-            String hex = Integer.toHexString(0xff & b);
-            if (hex.length() == 1) hexString.append('0');
-            hexString.append(hex);
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xf];
         }
-        return hexString.toString();
+        return new String(hex);
     }
 
     public void register(String jobType, Consumer<FaktoryJob> action) {
-        FaktoryTask task = new FaktoryTask(jobType, action);
-        tasks.add(task);
-        log.debug("Registered task: {}", task);
+        registry.register(new FaktoryTask(jobType, action));
     }
 
-    public void deregister(String jobType) {
-        tasks.removeAll(tasks.stream()
-                .filter(task -> task.getJobType().equals(jobType))
-                .peek(task -> log.debug("Unregistered task: {}", task))
-                .collect(Collectors.toList()));
+    public void register(String jobType, FaktoryTaskOptions options, Consumer<FaktoryJob> action) {
+        registry.register(new FaktoryTask(jobType, options, action));
     }
 
-    public void run() throws IOException, FaktoryConnectionError, NoSuchAlgorithmException {
-        if (!connection.isConnected()) {
-            connect();
+    /**
+     * Registers a task that receives the job args bound to {@code argsType}. A single argument is bound directly,
+     * so {@code [{"id":1}]} binds to a POJO with an {@code id} property; array and collection types receive all of
+     * them. Args that cannot be bound fail the job.
+     */
+    public <T> void register(String jobType, Class<T> argsType, Consumer<T> action) {
+        register(jobType, FaktoryTaskOptions.DEFAULT, argsType, action);
+    }
+
+    public <T> void register(String jobType, FaktoryTaskOptions options, Class<T> argsType, Consumer<T> action) {
+        ObjectReader argsReader = objectMapper.readerFor(argsType)
+                .with(DeserializationFeature.UNWRAP_SINGLE_VALUE_ARRAYS);
+        registry.register(new FaktoryTask(jobType, options, job -> action.accept(readArgs(job, argsReader))));
+    }
+
+    private <T> T readArgs(FaktoryJob job, ObjectReader argsReader) {
+        try (JsonParser args = job.getArgsParser()) {
+            if (args == null) {
+                TokenBuffer buffer = new TokenBuffer(objectMapper, false);
+                objectMapper.writeValue(buffer, job.getArgs());
+                return argsReader.readValue(buffer.asParser());
+            }
+            return argsReader.readValue(args);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to bind args of job " + job.getJobId(), e);
         }
+    }
 
-        log.debug("Creating a worker pool with concurrency of {}", this.concurrency);
+    /**
+     * Registers a handler whose job is done when the returned stage completes, acknowledging it on success and
+     * failing it otherwise. Until then the job holds a concurrency slot but no thread.
+     */
+    public void registerAsync(String jobType, Function<FaktoryJob, ? extends CompletionStage<?>> action) {
+        registerAsync(jobType, FaktoryTaskOptions.DEFAULT, action);
+    }
 
-        this.lastHeartbeat = Instant.now().plusSeconds(this.heartbeatInterval);
+    public void registerAsync(String jobType, FaktoryTaskOptions options,
+                              Function<FaktoryJob, ? extends CompletionStage<?>> action) {
+        registry.register(FaktoryTask.async(jobType, options, action));
+    }
 
-        log.info("Queues: {}", this.queues);
+    public void deregister(String jobType) {
+        registry.deregister(jobType);
+    }
 
-        while (true) {
-            try {
-                tick();
-                if (!connection.isConnected()) {
-                    break;
+    public FaktoryTaskRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Runs a job through the JSON readers and writers used by the worker loop, so Jackson builds its serializers
+     * before the first real job instead of while it waits to be processed.
+     */
+    private void warmUp() {
+        try {
+            FaktoryJob job = FaktoryJob.builder()
+                    .withJobId("warm-up")
+                    .withJobType("WarmUp")
+                    .withArgs(Collections.singletonList(0))
+                    .build();
+            byte[] bytes = objectMapper.writeValueAsBytes(job);
+            fetchReader.read(bytes, 0, bytes.length);
+            failMessage(job, null);
+            stateReader.readValue("{\"state\":\"quiet\"}");
+            objectMapper.readValue("{\"v\":2}", FaktoryHandshake.class);
+            helloPayload();
+        } catch (IOException | RuntimeException e) {
+            log.debug("Unable to warm up JSON serialization", e);
+        }
+    }
+
+    public FaktoryMetrics getMetrics() {
+        return metrics;
+    }
+
+    FaktoryConsumerInterceptor getConsumerInterceptor() {
+        return consumerInterceptor;
+    }
+
+    public void run() throws IOException, FaktoryConnectionError, NoSuchAlgorithmException {
+        try {
+            if (preconnect > 0) {
+                Thread warmUp = new Thread(this::warmUp, "faktory-warm-up");
+                warmUp.setDaemon(true);
+                warmUp.start();
+                pool.connectAll(preconnect);
+                try {
+                    warmUp.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
-            } catch (InterruptedException e) {
-                if (disconnecting) {
-                    break;
+            } else {
+                pool.connect(Channel.FETCH);
+                pool.connect(Channel.HEARTBEAT);
+            }
+
+            log.debug("Creating a worker pool with concurrency of {} using {}", this.concurrency,
+                    this.executorStrategy);
+
+            startHeartbeat();
+
+            log.info("Queues: {} fetched {}", this.queues, this.fetchStrategy);
+
+            if (prefetcher != null) {
+                prefetcher.start();
+            }
+
+            while (true) {
+                try {
+                    try {
+                        tick();
+                        reconnectAttempts = 0;
+                    } catch (IOException | FaktoryConnectionError e) {
+                        if (!pool.isOpen()) {
+                            break;
+                        }
+                        if (e instanceof FaktoryHandshakeError) {
+                            log.error("Faktory refused to reconnect, stopping with {} reports unsent",
+                                    unsentReports.size(), e);
+                            throw e;
+                        }
+                        if (disconnecting && isPastDisconnectDeadline()) {
+                            log.error("Unable to reach Faktory before the shutdown deadline, dropping {} reports",
+                                    unsentReports.size(), e);
+                            pushPipeline.close();
+                            pool.close();
+                            break;
+                        }
+                        long delay = nextReconnectDelay();
+                        log.warn("Lost connection to Faktory, reconnecting in {} ms with {} reports waiting",
+                                delay, unsentReports.size(), e);
+                        Thread.sleep(delay);
+                    }
+                    if (!pool.isOpen()) {
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    if (disconnecting) {
+                        break;
+                    }
+                    log.error("Fatal: waiting up to 15 seconds for workers to finish current tasks", e);
+                    disconnect(false, 15);
                 }
-                log.error("Fatal: waiting up to 15 seconds for workers to finish current tasks", e);
-                disconnect(false, 15);
             }
+
+            if (pool.isOpen()) {
+                log.warn("Forcing worker processes to shutdown...");
+                disconnect(true, 30);
+            }
+        } finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * Releases what {@link #run()} started on every way out of it, so a worker that stopped on an error does not
+     * keep sending heartbeats for jobs it will never report.
+     */
+    private void shutdown() {
+        stopHeartbeat();
+
+        if (pool.isOpen()) {
+            log.error("Worker stopped unexpectedly, closing its connections to Faktory");
+            pushPipeline.close();
+            pool.close();
+        }
+
+        if (prefetcher != null && prefetcher.isRunning()) {
+            prefetcher.stop(PREFETCH_STOP_MILLIS);
+        }
+
+        if (executorStrategy.isShutdownWithClient()) {
+            getExecutor().shutdown();
+        }
+
+        if (timeoutScheduler != null) {
+            timeoutScheduler.shutdownNow();
         }
 
-        if (connection.isConnected()) {
-            log.warn("Forcing worker processes to shutdown...");
-            disconnect(true, 30);
+        if (spool != null) {
+            spool.close();
         }
+    }
+
+    public String getWorkerId() {
+        return workerId;
+    }
 
-        getExecutor().shutdown();
+    public boolean isDisconnecting() {
+        return disconnecting;
     }
 
     public void disconnect(boolean force, long waitForSeconds) throws IOException, FaktoryConnectionError {
         log.debug("Disconnecting force={}, wait={}", force, waitForSeconds);
 
+        this.disconnectDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(waitForSeconds);
         this.quiet = true;
         this.disconnecting = true;
-        this.disconnectAfter = Instant.now().plusSeconds(waitForSeconds);
+        completed.offer(WAKE_UP);
 
         if (force) {
             try {
+                returnPrefetchedJobs();
                 failAllJobs();
             } finally {
-                connection.close();
+                pushPipeline.close();
+                pool.close();
             }
         }
 
     }
 
     private void tick() throws IOException, FaktoryConnectionError, InterruptedException {
-        if (!pending.isEmpty()) {
-            sendStatus();
+        sendStatus();
+
+        if (workerState.get() != STATE_RUNNING) {
+            applyWorkerState();
         }
 
-        if (shouldSendHeartbeat()) {
-            heartbeat();
+        if (quiet && prefetcher != null && prefetcher.isRunning()) {
+            returnPrefetchedJobs();
         }
 
         if (shouldFetchJob()) {
-            String reply = connection.send("FETCH " + String.join(" ", queues));
-            if (reply != null) {
-                FaktoryJob job = objectMapper.readValue(reply, FaktoryJob.class);
+            FaktoryJob job = prefetcher != null ? prefetcher.poll() : fetch();
+            if (job != null) {
                 process(job);
+                return;
+            }
+            if (prefetcher == null) {
+                return; // the FETCH itself blocked while the queues were empty
+            }
+        } else if (disconnecting) {
+            if (pending.isEmpty()) { // can disconnect?
+                pushPipeline.close();
+                pool.close();
+                return;
             }
-        } else {
-            if (disconnecting) {
-                if (pending.isEmpty()) { // can disconnect?
-                    connection.close();
-                    return;
-                }
 
-                if (Instant.now().isAfter(disconnectAfter)) {
-                    disconnect(true, 30);
-                }
+            if (isPastDisconnectDeadline()) {
+                disconnect(true, 30);
+                return;
             }
-            Thread.sleep(250);
+        }
+        // wake up as soon as a task completes, a job is prefetched or the worker state changes, or when the next
+        // report flush or deadline is due
+        FutureFaktoryTask task = completed.poll(millisUntilNextEvent(), TimeUnit.MILLISECONDS);
+        if (task != null) {
+            addToReportBatch(task);
+            sendStatus();
         }
     }
 
+    FaktoryJob fetch() throws IOException, FaktoryConnectionError {
+        List<String> selected = fetchStrategy.select(queues);
+        String message = "FETCH " + String.join(" ", selected);
+        long start = timed ? System.nanoTime() : 0;
+        FaktoryJob job = pool.execute(Channel.FETCH, connection -> connection.send(message, fetchReader));
+        if (timed) {
+            metrics.fetched(System.nanoTime() - start, job == null);
+        }
+        fetchStrategy.fetched(selected, job);
+        return job;
+    }
+
+    /**
+     * Stops prefetching and FAILs every buffered job. Faktory has no command to hand a reserved job back, so this
+     * is the quickest way to make it available to other workers; it counts as a retry.
+     */
+    private void returnPrefetchedJobs() throws IOException, FaktoryConnectionError {
+        if (prefetcher == null) {
+            return;
+        }
+        List<FaktoryJob> jobs = prefetcher.stop(PREFETCH_STOP_MILLIS);
+        if (!jobs.isEmpty()) {
+            log.info("Returning {} prefetched jobs to Faktory", jobs.size());
+        }
+        for (FaktoryJob job : jobs) {
+            fail(job, new CancellationException("Worker stopped before running the job"));
+        }
+    }
+
+    /**
+     * FAILs a job the prefetcher fetched after it stopped, from the prefetch thread.
+     */
+    private void returnLateJob(FaktoryJob job) throws IOException, FaktoryConnectionError {
+        String message = failMessage(job, new CancellationException("Worker stopped before running the job"));
+        pool.execute(Channel.REPORT, connection -> connection.send(message));
+    }
+
     private void sendStatus() throws IOException, FaktoryConnectionError {
-        List<FutureFaktoryTask> toRemove = new ArrayList<>();
-        for (FutureFaktoryTask task : pending) {
-            if (task.getFuture().isDone()) {
-                toRemove.add(task);
+        FutureFaktoryTask task;
+        while ((task = completed.poll()) != null) {
+            addToReportBatch(task);
+        }
+        if (!reportBatch.isEmpty() && isReportDue()) {
+            flushReports();
+        } else if (!unsentReports.isEmpty()) {
+            sendUnsentReports();
+        }
+    }
+
+    private void addToReportBatch(FutureFaktoryTask task) {
+        if (task == WAKE_UP) {
+            return;
+        }
+        release(task);
+        if (reportBatch.isEmpty()) {
+            reportBatchStarted = System.nanoTime();
+        }
+        reportBatch.add(task);
+    }
+
+    private boolean isReportDue() {
+        return reportFlushNanos == 0
+                || disconnecting
+                || reportBatch.size() >= reportBatchSize
+                || System.nanoTime() - reportBatchStarted >= reportFlushNanos;
+    }
+
+    /**
+     * Sends the ACK/FAIL of every finished task, pipelined in batches of {@code reportBatchSize} frames per write.
+     */
+    private void flushReports() throws IOException, FaktoryConnectionError {
+        for (FutureFaktoryTask task : reportBatch) {
+            String message = reportMessage(task);
+            if (message != null) {
+                queueReport(task.getFaktoryJob(), message);
+            }
+        }
+        reportBatch.clear();
+        sendUnsentReports();
+    }
+
+    /**
+     * Sends the queued reports in order. Reports stay queued until their batch was written and answered, so the
+     * ones cut off by a lost connection are sent again after reconnecting.
+     */
+    private void sendUnsentReports() throws IOException, FaktoryConnectionError {
+        List<String> messages = new ArrayList<>(Math.min(unsentReports.size(), reportBatchSize));
+        while (!unsentReports.isEmpty()) {
+            Iterator<String> iterator = unsentReports.iterator();
+            while (messages.size() < reportBatchSize && iterator.hasNext()) {
+                messages.add(iterator.next());
+            }
+            sendReports(messages);
+            for (int i = 0; i < messages.size(); i++) {
+                unsentReports.poll();
+            }
+            if (consumerInterceptor != null) {
+                long now = System.nanoTime();
+                for (int i = 0; i < messages.size(); i++) {
+                    QueuedReport report = unsentReportJobs.poll();
+                    consumerInterceptor.jobReported(report.job, now - report.queuedNanos);
+                }
+            }
+            messages.clear();
+        }
+    }
+
+    void sendReports(List<String> messages) throws IOException, FaktoryConnectionError {
+        pool.execute(Channel.REPORT, connection -> {
+            for (String message : messages) {
+                connection.write(message);
+            }
+            long start = timed ? System.nanoTime() : 0;
+            connection.flush();
+            for (String message : messages) {
                 try {
-                    task.getFuture().get(1, TimeUnit.SECONDS);
-                    ack(task.getFaktoryJob());
-                } catch (InterruptedException | ExecutionException | TimeoutException | IOException | FaktoryConnectionError e) {
-                    fail(task.getFaktoryJob(), e);
-                    log.warn("Task failed: {}", task.getFaktoryJob().getJobId(), e);
+                    connection.receive();
+                } catch (FaktoryConnectionError e) {
+                    log.warn("Report rejected by Faktory: {} for {}", e.getMessage(), message);
+                } finally {
+                    connection.recordCommand(message, start);
                 }
             }
+            return null;
+        });
+    }
+
+    /**
+     * Returns the ACK or FAIL command for a finished task, or {@code null} if it was already reported.
+     */
+    private String reportMessage(FutureFaktoryTask task) throws IOException {
+        if (!pending.remove(task)) {
+            return null; // already reported, e.g. cancelled while failing all jobs
+        }
+        FaktoryJob job = task.getFaktoryJob();
+        try {
+            task.getFuture().get();
+            releaseDedupeKey(task, true);
+            if (timed) {
+                metrics.jobAcked(job.getJobType(), task.getPendingNanos());
+            }
+            return ackMessage(job);
+        } catch (ExecutionException e) {
+            releaseDedupeKey(task, false);
+            log.warn("Task failed: {} with job: {}", task.getFaktoryTask(), job.getJobId(), e.getCause());
+            if (timed) {
+                metrics.jobFailed(job.getJobType(), task.getPendingNanos());
+            }
+            return failMessage(job, e.getCause());
+        } catch (CancellationException e) {
+            releaseDedupeKey(task, false);
+            Exception error = e;
+            if (task.isTimedOut()) {
+                long timeout = task.getFaktoryTask().getOptions().getTimeoutMillis();
+                error = new TimeoutException("Job did not finish within " + timeout + " ms");
+                log.warn("Task timed out: {} with job: {}", task.getFaktoryTask(), job.getJobId());
+                metrics.jobTimedOut(job.getJobType());
+            } else {
+                log.warn("Task failed: {} with job: {}", task.getFaktoryTask(), job.getJobId(), e);
+            }
+            if (timed) {
+                metrics.jobFailed(job.getJobType(), task.getPendingNanos());
+            }
+            return failMessage(job, error);
+        } catch (InterruptedException e) {
+            releaseDedupeKey(task, false);
+            log.warn("Task failed: {} with job: {}", task.getFaktoryTask(), job.getJobId(), e);
+            if (timed) {
+                metrics.jobFailed(job.getJobType(), task.getPendingNanos());
+            }
+            return failMessage(job, e);
         }
-        pending.removeAll(toRemove);
     }
 
-    private void process(FaktoryJob job) {
-        for (FaktoryTask task : getRegisteredTasks(job)) {
+    /**
+     * Releases the dedupe key of a job once its last task finished, as completed only if every task succeeded.
+     */
+    private void releaseDedupeKey(FutureFaktoryTask task, boolean completed) {
+        DedupeClaim claim = task.dedupeClaim;
+        if (claim == null) {
+            return;
+        }
+        claim.completed &= completed;
+        if (--claim.remaining == 0) {
+            dedupeCache.release(claim.key, claim.completed);
+        }
+    }
+
+    private void process(FaktoryJob job) throws IOException, FaktoryConnectionError {
+        metrics.jobFetched(job.getJobType());
+        if (consumerInterceptor != null) {
+            consumerInterceptor.jobFetched(job, queueWaitNanos(job));
+        }
+        FaktoryTask[] tasks = getRegisteredTasks(job);
+        if (tasks.length == 0) {
+            registry.recordUnknownJobType(job.getJobType());
+            metrics.unknownJobType(job.getJobType());
+            fail(job, new IllegalStateException("No task registered for job type " + job.getJobType()));
+            return;
+        }
+        DedupeClaim claim = null;
+        String key;
+        if (dedupeCache != null && (key = dedupeKey.apply(job)) != null) {
+            if (!dedupeCache.tryAcquire(key)) {
+                log.debug("Acknowledging duplicate job {} with key {} without running it", job.getJobId(), key);
+                metrics.dedupeHit(job.getJobType());
+                queueReport(job, ackMessage(job));
+                sendUnsentReports();
+                return;
+            }
+            metrics.dedupeMiss(job.getJobType());
+            claim = new DedupeClaim(key, tasks.length);
+        }
+        for (FaktoryTask task : tasks) {
             log.debug("Running task: {} from job {}", task.getJobType(), job);
-            FutureFaktoryTask future = new FutureFaktoryTask(job, task,
-                    new FutureTask<>(() -> {
-                        try {
-                            task.getAction().accept(job);
-                        } catch (Throwable e) {
-                            log.error("Task failed: {} with job: {}", task, job, e);
-                            fail(job, e);
-                        }
-                        return null;
-                    }));
-            getExecutor().submit(future.getFuture());
+            FutureFaktoryTask future = task.isAsync() ? asyncTask(job, task) : syncTask(job, task);
+            future.dedupeClaim = claim;
             pending.add(future);
+            int maxConcurrency = task.getOptions().getMaxConcurrency();
+            TaskSlots slots = maxConcurrency > 0 ? taskSlots.computeIfAbsent(task, t -> new TaskSlots()) : null;
+            if (slots != null && slots.running >= maxConcurrency) {
+                log.debug("Parking job {}, {} already running", job.getJobId(), task);
+                slots.parked.add(future);
+                parked++;
+            } else {
+                start(future);
+            }
         }
+        metrics.executorSaturation(pending.size() - parked, concurrency);
     }
 
-    private void ack(FaktoryJob job) throws IOException, FaktoryConnectionError {
-        Map<String, String> payload = new HashMap<>();
-        payload.put("jid", job.getJobId());
-        connection.send("ACK " + objectMapper.writeValueAsString(payload));
+    private FutureFaktoryTask syncTask(FaktoryJob job, FaktoryTask task) {
+        if (consumerInterceptor != null) {
+            return new FutureFaktoryTask(job, task, () -> {
+                Object context = consumerInterceptor.beforeExecute(job);
+                long start = System.nanoTime();
+                Throwable error = null;
+                try {
+                    task.getAction().accept(job);
+                } catch (Throwable t) {
+                    error = t;
+                    throw t;
+                } finally {
+                    long elapsed = System.nanoTime() - start;
+                    if (timed) {
+                        metrics.jobExecuted(job.getJobType(), elapsed);
+                    }
+                    afterExecute(job, context, error, elapsed);
+                }
+                return null;
+            }, completed);
+        }
+        return new FutureFaktoryTask(job, task, timed ? () -> {
+            long start = System.nanoTime();
+            try {
+                task.getAction().accept(job);
+            } finally {
+                metrics.jobExecuted(job.getJobType(), System.nanoTime() - start);
+            }
+            return null;
+        } : () -> {
+            task.getAction().accept(job);
+            return null;
+        }, completed);
+    }
+
+    private FutureFaktoryTask asyncTask(FaktoryJob job, FaktoryTask task) {
+        if (consumerInterceptor != null) {
+            return FutureFaktoryTask.async(job, task, () -> {
+                Object context = consumerInterceptor.beforeExecute(job);
+                long start = System.nanoTime();
+                CompletionStage<?> stage;
+                try {
+                    stage = applyAsync(job, task);
+                } catch (RuntimeException | Error e) {
+                    afterExecute(job, context, e, System.nanoTime() - start);
+                    throw e;
+                }
+                return stage.whenComplete((ignored, error) -> {
+                    long elapsed = System.nanoTime() - start;
+                    if (timed) {
+                        metrics.jobExecuted(job.getJobType(), elapsed);
+                    }
+                    afterExecute(job, context, error instanceof CompletionException
+                            && error.getCause() != null ? error.getCause() : error, elapsed);
+                });
+            }, completed);
+        }
+        if (!timed) {
+            return FutureFaktoryTask.async(job, task, () -> applyAsync(job, task), completed);
+        }
+        return FutureFaktoryTask.async(job, task, () -> {
+            long start = System.nanoTime();
+            return applyAsync(job, task).whenComplete((ignored, error) ->
+                    metrics.jobExecuted(job.getJobType(), System.nanoTime() - start));
+        }, completed);
+    }
+
+    /**
+     * Calls the consumer interceptor, logging its errors so they never change the outcome of the job.
+     */
+    private void afterExecute(FaktoryJob job, Object context, Throwable error, long elapsed) {
+        try {
+            consumerInterceptor.afterExecute(job, context, error, elapsed);
+        } catch (RuntimeException e) {
+            log.warn("Consumer interceptor failed after job: {}", job.getJobId(), e);
+        }
+    }
+
+    private static CompletionStage<?> applyAsync(FaktoryJob job, FaktoryTask task) {
+        CompletionStage<?> stage = task.getAsyncAction().apply(job);
+        if (stage == null) {
+            throw new NullPointerException("Async handler for " + task.getJobType() + " returned null");
+        }
+        return stage;
+    }
+
+    /**
+     * Time since Faktory enqueued the job by the local clock, -1 if unknown.
+     */
+    static long queueWaitNanos(FaktoryJob job) {
+        if (job.getEnqueuedAt() == null) {
+            return -1;
+        }
+        try {
+            Instant enqueued = OffsetDateTime.parse(job.getEnqueuedAt()).toInstant();
+            return Math.max(0, ChronoUnit.NANOS.between(enqueued, Instant.now()));
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    private void start(FutureFaktoryTask future) {
+        FaktoryTaskOptions options = future.getFaktoryTask().getOptions();
+        future.started = true;
+        if (options.getMaxConcurrency() > 0) {
+            taskSlots.computeIfAbsent(future.getFaktoryTask(), t -> new TaskSlots()).running++;
+        }
+        ExecutorService taskExecutor = options.getExecutor();
+        (taskExecutor != null ? taskExecutor : getExecutor()).execute(future.getFuture());
+        if (options.getTimeoutMillis() > 0) {
+            future.scheduleTimeout(getTimeoutScheduler(), options.getTimeoutMillis());
+        }
+    }
+
+    /**
+     * Frees the slot of a finished task and starts the next job parked behind its concurrency limit.
+     */
+    private void release(FutureFaktoryTask future) {
+        if (!future.started) {
+            return;
+        }
+        future.started = false;
+        future.cancelTimeout();
+        TaskSlots slots = taskSlots.get(future.getFaktoryTask());
+        if (slots == null) {
+            return;
+        }
+        slots.running--;
+        FutureFaktoryTask next;
+        while ((next = slots.parked.poll()) != null) {
+            parked--;
+            if (!next.getFuture().isDone()) { // parked jobs are cancelled by a forced disconnect
+                start(next);
+                break;
+            }
+        }
+        if (slots.running == 0 && slots.parked.isEmpty()) {
+            taskSlots.remove(future.getFaktoryTask());
+        }
     }
 
     private void fail(FaktoryJob job, Throwable error) throws IOException, FaktoryConnectionError {
+        queueReport(job, failMessage(job, error));
+        sendUnsentReports();
+    }
+
+    private void queueReport(FaktoryJob job, String message) {
+        unsentReports.add(message);
+        if (consumerInterceptor != null) {
+            unsentReportJobs.add(new QueuedReport(job, System.nanoTime()));
+        }
+    }
+
+    static String ackMessage(FaktoryJob job) {
+        StringBuilder sb = new StringBuilder(job.getJobId().length() + 16).append("ACK {\"jid\":\"");
+        return sb.append(JSON_STRING_ENCODER.quoteAsString(job.getJobId())).append("\"}").toString();
+    }
+
+    String failMessage(FaktoryJob job, Throwable error) throws IOException {
         Map<String, Object> payload = new HashMap<>();
         payload.put("jid", job.getJobId());
 
@@ -283,76 +1028,235 @@ public class FaktoryClient {
             payload.put("backtrace", sw.toString().split("\n"));
         }
 
-        connection.send("FAIL " + objectMapper.writeValueAsString(payload));
+        return "FAIL " + objectMapper.writeValueAsString(payload);
     }
 
     private void failAllJobs() throws IOException, FaktoryConnectionError {
         for (FutureFaktoryTask task : pending) {
             if (task.getFuture().isDone()) {
-                ack(task.getFaktoryJob());
-            } else {
+                addToReportBatch(task);
+            } else if (pending.remove(task)) {
                 task.getFuture().cancel(true);
+                releaseDedupeKey(task, false);
                 fail(task.getFaktoryJob(), null);
+                metrics.jobFailed(task.getFaktoryJob().getJobType(), task.getPendingNanos());
             }
         }
+        flushReports();
     }
 
     private boolean shouldFetchJob() {
-        return !disconnecting && !quiet && pending.size() < concurrency;
+        // tasks waiting in the report batch have finished and no longer hold a slot, parked tasks never held one
+        // but are bounded by the concurrency too
+        return !disconnecting && !quiet && pending.size() - reportBatch.size() - parked < concurrency
+                && parked < concurrency;
+    }
+
+    private boolean isPastDisconnectDeadline() {
+        return System.nanoTime() - disconnectDeadline >= 0;
+    }
+
+    private long millisUntilNextEvent() {
+        long millis = TimeUnit.SECONDS.toMillis(heartbeatInterval);
+        if (disconnecting) {
+            millis = Math.min(millis, TimeUnit.NANOSECONDS.toMillis(disconnectDeadline - System.nanoTime()));
+        }
+        if (!reportBatch.isEmpty()) {
+            long flushIn = TimeUnit.NANOSECONDS.toMillis(reportBatchStarted + reportFlushNanos - System.nanoTime());
+            millis = Math.min(millis, flushIn);
+        }
+        return Math.max(1, millis);
+    }
+
+    /**
+     * Sends heartbeats from their own thread and connection, so a blocking FETCH or a slow report never delays
+     * them past the point where Faktory considers the worker gone.
+     */
+    synchronized void startHeartbeat() {
+        if (heartbeatScheduler != null) {
+            return;
+        }
+        heartbeatScheduler = Executors.newSingleThreadScheduledExecutor(
+                FaktoryExecutorStrategy.threadFactory("faktory-heartbeat"));
+        heartbeatScheduler.scheduleWithFixedDelay(() -> {
+            if (!pool.isOpen()) {
+                return;
+            }
+            try {
+                heartbeat();
+            } catch (IOException | FaktoryConnectionError e) {
+                log.warn("Heartbeat failed, retrying in {} seconds", heartbeatInterval, e);
+            } catch (RuntimeException e) {
+                log.error("Unexpected heartbeat error", e);
+            }
+        }, heartbeatInterval, heartbeatInterval, TimeUnit.SECONDS);
+    }
+
+    synchronized void stopHeartbeat() {
+        if (heartbeatScheduler != null) {
+            heartbeatScheduler.shutdownNow();
+            heartbeatScheduler = null;
+        }
     }
 
-    private boolean shouldSendHeartbeat() {
-        return Instant.now().isAfter(lastHeartbeat.plusSeconds(heartbeatInterval));
+    boolean isQuietRequested() {
+        return workerState.get() != STATE_RUNNING;
+    }
+
+    boolean isTerminateRequested() {
+        return workerState.get() == STATE_TERMINATE;
     }
 
     private void heartbeat() throws IOException, FaktoryConnectionError {
         log.debug("Sending heartbeat for worker {}", workerId);
         Map<String, Object> payload = new HashMap<>();
         payload.put("wid", workerId);
-        String reply = connection.send("BEAT " + objectMapper.writeValueAsString(payload));
-        if (reply.equals("+OK")) {
+        String message = "BEAT " + objectMapper.writeValueAsString(payload);
+        long start = timed ? System.nanoTime() : 0;
+        Map<String, String> map = pool.execute(Channel.HEARTBEAT, connection -> connection.send(message, stateReader));
+        if (timed) {
+            metrics.heartbeat(System.nanoTime() - start);
+        }
+        if (map == null) {
             log.debug("Heartbeat acknowledged by Faktory");
-        } else {
-            Map<String, String> map = objectMapper.readValue(reply,
-                    new TypeReference<Map<String, String>>() {
-                    });
-            String state = map.get("state");
-            if ("quiet".equals(state)) {
-                if (!quiet) {
-                    log.warn("Faktory has quieted this worker, will not run any more tasks");
-                    quiet = true;
-                }
-            } else if ("terminate".equals(state)) {
-                if (!disconnecting) {
-                    log.warn("Faktory has asked this worker to shutdown, will cancel any pending tasks still running 25s time");
-                }
+            return;
+        }
+        String state = map.get("state");
+        int received = "terminate".equals(state) ? STATE_TERMINATE : "quiet".equals(state) ? STATE_QUIET
+                : STATE_RUNNING;
+        if (workerState.getAndAccumulate(received, Math::max) < received) {
+            completed.offer(WAKE_UP);
+        }
+    }
+
+    /**
+     * Acts on the state received by the heartbeat thread, on the run loop which owns the worker state.
+     */
+    private void applyWorkerState() throws IOException, FaktoryConnectionError {
+        if (workerState.get() == STATE_TERMINATE) {
+            if (!disconnecting) {
+                log.warn("Faktory has asked this worker to shutdown, will cancel any pending tasks still running 25s time");
                 disconnect(false, 25);
             }
+        } else if (!quiet) {
+            log.warn("Faktory has quieted this worker, will not run any more tasks");
+            quiet = true;
         }
-        lastHeartbeat = Instant.now();
+    }
+
+    /**
+     * Exponential backoff with jitter, so a fleet of workers does not reconnect all at once after an outage.
+     */
+    private long nextReconnectDelay() {
+        long ceiling = Math.min(maxReconnectDelay, reconnectDelay << Math.min(reconnectAttempts, 20));
+        reconnectAttempts++;
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
     }
 
     private ExecutorService getExecutor() {
         if (executor == null || executor.isShutdown()) {
             log.debug("Creating a new executor");
-            executor = Executors.newWorkStealingPool();
+            executor = executorStrategy.create(concurrency);
         }
         return executor;
     }
 
-    private List<FaktoryTask> getRegisteredTasks(FaktoryJob job) {
-        return tasks.stream().filter(task -> task.getJobType().equals(job.getJobType())).collect(Collectors.toList());
+    private ScheduledExecutorService getTimeoutScheduler() {
+        if (timeoutScheduler == null) {
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1,
+                    FaktoryExecutorStrategy.threadFactory("faktory-timeout"));
+            scheduler.setRemoveOnCancelPolicy(true);
+            timeoutScheduler = scheduler;
+        }
+        return timeoutScheduler;
+    }
+
+    FaktoryTask[] getRegisteredTasks(FaktoryJob job) {
+        return registry.lookup(job.getJobType());
+    }
+
+    /**
+     * A dedupe key claimed for a job, shared by the futures of its tasks.
+     */
+    static class DedupeClaim {
+
+        private final String key;
+        private int remaining;
+        private boolean completed = true;
+
+        DedupeClaim(String key, int tasks) {
+            this.key = key;
+            this.remaining = tasks;
+        }
+    }
+
+    private static class TaskSlots {
+
+        private final Queue<FutureFaktoryTask> parked = new ArrayDeque<>();
+        private int running;
+    }
+
+    private static class QueuedReport {
+
+        private final FaktoryJob job;
+        private final long queuedNanos;
+
+        QueuedReport(FaktoryJob job, long queuedNanos) {
+            this.job = job;
+            this.queuedNanos = queuedNanos;
+        }
+    }
+
+    /**
+     * Resolves the local host once per JVM, as it can take seconds when DNS is misconfigured.
+     */
+    private static class LocalHost {
+
+        private static final String NAME = resolve();
+
+        private static String resolve() {
+            try {
+                return InetAddress.getLocalHost().toString();
+            } catch (UnknownHostException e) {
+                return null;
+            }
+        }
     }
 
     public static class Builder {
 
+        // shared so clients reuse the serializers Jackson builds and caches per mapper
+        private static final ObjectMapper DEFAULT_OBJECT_MAPPER = new ObjectMapper();
+
         private URI uri;
-        private ObjectMapper objectMapper = new ObjectMapper();
+        private ObjectMapper objectMapper = DEFAULT_OBJECT_MAPPER;
         private String workerId;
         private int concurrency = 20;
         private long heartbeatInterval = 25;
         private List<String> queues = new ArrayList<>();
         private String password;
+        private int connectionPoolSize = 2;
+        private FaktoryTransportOptions transportOptions = FaktoryTransportOptions.DEFAULT;
+        private int maxPushesInFlight = 1000;
+        private FaktoryExecutorStrategy executorStrategy = FaktoryExecutorStrategy.workStealing();
+        private FaktoryMetrics metrics = FaktoryMetrics.NOOP;
+        private int reportBatchSize = 100;
+        private long reportFlushInterval;
+        private FaktoryFetchStrategy fetchStrategy = FaktoryFetchStrategy.strict();
+        private long emptyQueueBackoff;
+        private int prefetch;
+        private long reconnectDelay = 100;
+        private long maxReconnectDelay = 30_000;
+        private boolean lazyPayloads;
+        private long reservationTimeout = 1800;
+        private FaktoryTaskRegistry registry;
+        private boolean shutdownHook = true;
+        private FaktorySpoolOptions spoolOptions;
+        private int preconnect;
+        private final List<FaktoryProducerInterceptor> producerInterceptors = new ArrayList<>();
+        private final List<FaktoryConsumerInterceptor> consumerInterceptors = new ArrayList<>();
+        private FaktoryDedupeCache dedupeCache;
+        private Function<FaktoryJob, String> dedupeKey = FaktoryJob::getJobId;
 
         public Builder withUri(URI uri) {
             this.uri = uri;
@@ -389,6 +1293,198 @@ public class FaktoryClient {
             return this;
         }
 
+        public Builder withConnectionPoolSize(int connectionPoolSize) {
+            this.connectionPoolSize = connectionPoolSize;
+            return this;
+        }
+
+        public Builder withTransportOptions(FaktoryTransportOptions transportOptions) {
+            this.transportOptions = transportOptions;
+            return this;
+        }
+
+        public Builder withMaxPushesInFlight(int maxPushesInFlight) {
+            this.maxPushesInFlight = maxPushesInFlight;
+            return this;
+        }
+
+        public Builder withExecutorStrategy(FaktoryExecutorStrategy executorStrategy) {
+            this.executorStrategy = executorStrategy;
+            return this;
+        }
+
+        public Builder withExecutor(ExecutorService executor) {
+            this.executorStrategy = FaktoryExecutorStrategy.of(executor);
+            return this;
+        }
+
+        public Builder withFetchStrategy(FaktoryFetchStrategy fetchStrategy) {
+            this.fetchStrategy = fetchStrategy;
+            return this;
+        }
+
+        /**
+         * Milliseconds to leave a queue out of fetches after it came back empty, 0 to always fetch every queue.
+         */
+        public Builder withEmptyQueueBackoff(long emptyQueueBackoff) {
+            this.emptyQueueBackoff = emptyQueueBackoff;
+            return this;
+        }
+
+        public Builder withMetrics(FaktoryMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Maximum number of ACK/FAIL frames pipelined in a single write.
+         */
+        public Builder withReportBatchSize(int reportBatchSize) {
+            this.reportBatchSize = reportBatchSize;
+            return this;
+        }
+
+        /**
+         * Milliseconds to hold finished tasks so their reports can be coalesced, 0 to report right away.
+         */
+        public Builder withReportFlushInterval(long reportFlushInterval) {
+            this.reportFlushInterval = reportFlushInterval;
+            return this;
+        }
+
+        /**
+         * Number of jobs to fetch ahead of free concurrency slots on a background thread, 0 to fetch on demand.
+         */
+        public Builder withPrefetch(int prefetch) {
+            this.prefetch = prefetch;
+            return this;
+        }
+
+        /**
+         * Seconds Faktory keeps a fetched job reserved unless it sets {@code reserve_for}, prefetched jobs older
+         * than their reservation are dropped.
+         */
+        public Builder withReservationTimeout(long reservationTimeout) {
+            this.reservationTimeout = reservationTimeout;
+            return this;
+        }
+
+        /**
+         * Keeps the JSON of fetched jobs and parses {@code args} and {@code custom} only when first accessed,
+         * which saves work for large payloads that handlers only partly read.
+         */
+        public Builder withLazyPayloads(boolean lazyPayloads) {
+            this.lazyPayloads = lazyPayloads;
+            return this;
+        }
+
+        /**
+         * Milliseconds to wait before the first reconnect attempt after losing the connection, doubling on every
+         * further attempt up to {@code maxReconnectDelay}. The actual wait is randomized between half and all of it.
+         */
+        public Builder withReconnectBackoff(long reconnectDelay, long maxReconnectDelay) {
+            this.reconnectDelay = reconnectDelay;
+            this.maxReconnectDelay = maxReconnectDelay;
+            return this;
+        }
+
+        /**
+         * Handlers to run, shared with other clients using the same registry. A new one is created by default.
+         */
+        public Builder withRegistry(FaktoryTaskRegistry registry) {
+            this.registry = registry;
+            return this;
+        }
+
+        /**
+         * Whether the client installs a JVM shutdown hook that disconnects it gracefully, {@code true} by default.
+         */
+        public Builder withShutdownHook(boolean shutdownHook) {
+            this.shutdownHook = shutdownHook;
+            return this;
+        }
+
+        /**
+         * Spools submitted jobs to local disk so {@link FaktoryClient#submit(FaktoryJob)} neither blocks nor fails
+         * while Faktory is unreachable. Jobs pushed with {@code submitAll} bypass the spool.
+         */
+        public Builder withSpool(FaktorySpoolOptions spoolOptions) {
+            this.spoolOptions = spoolOptions;
+            return this;
+        }
+
+        /**
+         * Report connections to open at startup in parallel with the fetch and heartbeat connections, while JSON
+         * serialization is warmed up, so the first job does not pay for them. 0, the default, opens the fetch and
+         * heartbeat connections one after the other and every report connection on first use.
+         */
+        public Builder withPreconnect(int preconnect) {
+            this.preconnect = preconnect;
+            return this;
+        }
+
+        /**
+         * Adds an interceptor around every job pushed by this client, after those already added.
+         */
+        public Builder withProducerInterceptor(FaktoryProducerInterceptor interceptor) {
+            this.producerInterceptors.add(Objects.requireNonNull(interceptor));
+            return this;
+        }
+
+        /**
+         * Adds an interceptor around every job run by this client, after those already added.
+         */
+        public Builder withConsumerInterceptor(FaktoryConsumerInterceptor interceptor) {
+            this.consumerInterceptors.add(Objects.requireNonNull(interceptor));
+            return this;
+        }
+
+        /**
+         * Skips jobs run by {@link FaktoryClient#run()} whose {@code jid} the cache reports as running or recently
+         * completed, acknowledging them without running them again.
+         */
+        public Builder withDedupeCache(FaktoryDedupeCache dedupeCache) {
+            return withDedupeCache(dedupeCache, FaktoryJob::getJobId);
+        }
+
+        /**
+         * Like {@link #withDedupeCache(FaktoryDedupeCache)}, with jobs known by the given key, for example one
+         * built from their args. Jobs whose key is {@code null} always run.
+         */
+        public Builder withDedupeCache(FaktoryDedupeCache dedupeCache, Function<FaktoryJob, String> dedupeKey) {
+            this.dedupeCache = dedupeCache;
+            this.dedupeKey = Objects.requireNonNull(dedupeKey);
+            return this;
+        }
+
+        String getWorkerId() {
+            return workerId;
+        }
+
+        int getConcurrency() {
+            return concurrency;
+        }
+
+        FaktoryMetrics getMetrics() {
+            return metrics;
+        }
+
+        FaktoryExecutorStrategy getExecutorStrategy() {
+            return executorStrategy;
+        }
+
+        FaktoryTaskRegistry getRegistry() {
+            return registry;
+        }
+
+        boolean hasShutdownHook() {
+            return shutdownHook;
+        }
+
+        FaktorySpoolOptions getSpoolOptions() {
+            return spoolOptions;
+        }
+
         public FaktoryClient build() throws URISyntaxException {
             return new FaktoryClient(this);
         }
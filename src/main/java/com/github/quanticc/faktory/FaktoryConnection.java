@@ -1,37 +1,55 @@
 package com.github.quanticc.faktory;
 
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.Socket;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
 
 public class FaktoryConnection {
 
     private static final Logger log = LoggerFactory.getLogger(FaktoryConnection.class);
+    private static final byte[] CRLF = {'\r', '\n'};
 
     private final URI uri;
+    private final FaktoryMetrics metrics;
+    private final FaktoryTransportOptions options;
+    private final long idleTimeoutNanos;
 
-    private Socket socket;
-    private BufferedReader fromServer;
-    private DataOutputStream toServer;
+    private FaktoryTransport transport;
+    private FaktoryReplyReader fromServer;
+    private volatile long lastUsed;
 
     public FaktoryConnection(URI uri) {
+        this(uri, FaktoryMetrics.NOOP);
+    }
+
+    public FaktoryConnection(URI uri, FaktoryMetrics metrics) {
+        this(uri, metrics, FaktoryTransportOptions.DEFAULT);
+    }
+
+    public FaktoryConnection(URI uri, FaktoryMetrics metrics, FaktoryTransportOptions options) {
         this.uri = uri;
+        this.metrics = metrics;
+        this.options = options;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(options.getIdleTimeoutMillis());
     }
 
     boolean isConnected() {
-        return socket != null && socket.isConnected();
+        return transport != null && transport.isOpen();
+    }
+
+    boolean isHealthy() {
+        return isConnected() && transport.isHealthy()
+                && (idleTimeoutNanos == 0 || System.nanoTime() - lastUsed < idleTimeoutNanos);
     }
 
     String handshake() throws IOException, FaktoryConnectionError {
-        socket = openSocket();
-        fromServer = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        toServer = new DataOutputStream(socket.getOutputStream());
+        transport = openTransport();
+        fromServer = new FaktoryReplyReader(transport);
 
         String response = readFromSocket();
 
@@ -39,7 +57,6 @@ public class FaktoryConnection {
             throw new FaktoryConnectionError(response);
         }
 
-        log.debug("> {}", response);
         return response.split(" ", 2)[1];
     }
 
@@ -48,7 +65,31 @@ public class FaktoryConnection {
     }
 
     String send(String message) throws FaktoryConnectionError, IOException {
+        long start = metrics.isEnabled() ? System.nanoTime() : 0;
         writeToSocket(message);
+        try {
+            return receive();
+        } finally {
+            recordCommand(message, start);
+        }
+    }
+
+    /**
+     * Buffers a command without flushing it, so several commands can be pipelined before reading their replies.
+     */
+    void write(String message) throws IOException {
+        log.debug("{}", message);
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        transport.write(bytes, 0, bytes.length);
+        transport.write(CRLF, 0, CRLF.length);
+    }
+
+    void flush() throws IOException {
+        lastUsed = System.nanoTime();
+        transport.flush();
+    }
+
+    String receive() throws FaktoryConnectionError, IOException {
         String response = readFromSocket();
         if (response != null && response.startsWith("-")) {
             throw new FaktoryConnectionError(response);
@@ -56,86 +97,82 @@ public class FaktoryConnection {
         return response;
     }
 
-    private Socket openSocket() throws IOException {
-        return socket != null ? socket : new Socket(uri.getHost(), uri.getPort());
+    /**
+     * Sends a command and binds a bulk reply directly from the read buffer, without an intermediate String.
+     * Returns {@code null} when the server replies with nil or a simple string such as {@code +OK}.
+     */
+    <T> T send(String message, ObjectReader reader) throws FaktoryConnectionError, IOException {
+        return send(message, reader::<T>readValue);
+    }
+
+    /**
+     * Sends a command and hands a bulk reply to {@code reader} as a slice of the read buffer, which is only valid
+     * until the next read. Returns {@code null} when the server replies with nil or a simple string.
+     */
+    <T> T send(String message, BulkReader<T> reader) throws FaktoryConnectionError, IOException {
+        long start = metrics.isEnabled() ? System.nanoTime() : 0;
+        writeToSocket(message);
+        int type = fromServer.read();
+        recordCommand(message, start);
+        logReply(type);
+        switch (type) {
+            case FaktoryReplyReader.BULK:
+                return reader.read(fromServer.array(), fromServer.offset(), fromServer.length());
+            case FaktoryReplyReader.ERROR:
+                throw new FaktoryConnectionError(fromServer.text());
+            default:
+                return null;
+        }
+    }
+
+    private FaktoryTransport openTransport() throws IOException {
+        if (isConnected()) {
+            return transport;
+        }
+        lastUsed = System.nanoTime();
+        return options.getTransport().connect(uri, options.getConnectTimeoutMillis(), options.getReadTimeoutMillis());
     }
 
     private String readFromSocket() throws IOException {
-        int bufferSize = 4096;
-        char[] buf = new char[bufferSize];
-        int read = fromServer.read(buf);
-        log.trace("Bytes read: {}", read);
-        String buffer = new String(buf).replace("\u0000", "");
-        boolean buffering;
-        while (true) {
-            buffering = true;
-            while (buffering) {
-                if (buffer.contains("\r\n")) {
-                    String[] tokens = buffer.split("\r\n", 2);
-                    String line = tokens[0];
-                    buffer = tokens[1];
-                    log.trace("Split: \"{}\", \"{}\"", line, buffer);
-                    if (line.isEmpty()) {
-                        continue;
-                    } else if (line.charAt(0) == '+') {
-                        String reply = line.trim();
-                        log.debug("> {}", reply);
-                        return reply;
-                    } else if (line.charAt(0) == '-') {
-                        String reply = line.trim();
-                        log.debug("> {}", reply);
-                        return reply;
-                    } else if (line.charAt(0) == '$') {
-                        // read $xxx bytes of data into a buffer
-                        int toRead = Integer.parseInt(line.substring(1)) + 2;
-                        log.trace("Bytes to read: {}", toRead);
-                        if (toRead <= 1) {
-                            log.info("> nil");
-                            return null;
-                        } else {
-                            String data;
-                            if (buffer.length() >= toRead) {
-                                log.trace("Enough bytes in the buffer: {}", buffer.length());
-                                // we've already got enough bytes in the buffer
-                                data = buffer.substring(0, toRead);
-                                buffer = buffer.substring(toRead);
-                            } else {
-                                data = buffer;
-                                while (data.length() != toRead) {
-                                    int required = toRead - data.length();
-                                    char[] bb = new char[required];
-                                    int bulkRead = fromServer.read(bb);
-                                    log.trace("Read {} bytes while in bulk", bulkRead);
-                                    data += new String(bb);
-                                }
-                                buffer = "";
-                            }
-                            String reply = data.trim();
-                            log.debug("> {}", reply);
-                            return reply;
-                        }
-                    }
-                } else {
-                    char[] bb = new char[bufferSize];
-                    int moreRead = fromServer.read(bb);
-                    log.trace("More bytes read: {}", moreRead);
-                    String more = new String(bb);
-                    if (more.isEmpty()) {
-                        buffering = false;
-                    } else {
-                        buffer += more;
-                    }
-                }
-            }
+        int type = fromServer.read();
+        logReply(type);
+        return type == FaktoryReplyReader.NIL ? null : fromServer.text();
+    }
+
+    void recordCommand(String message, long start) {
+        if (metrics.isEnabled()) {
+            int space = message.indexOf(' ');
+            metrics.command(space < 0 ? message : message.substring(0, space), System.nanoTime() - start);
+        }
+    }
+
+    private void logReply(int type) {
+        if (log.isDebugEnabled()) {
+            log.debug("> {}", type == FaktoryReplyReader.NIL ? "nil" : fromServer.text());
         }
     }
 
     private void writeToSocket(String content) throws IOException {
-        log.debug("{}", content);
-        toServer.writeBytes(content + "\n");
+        write(content);
+        flush();
     }
 
     void close() throws IOException {
-        socket.close();
+        if (transport != null) {
+            transport.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FaktoryConnection{" +
+                "uri=" + uri +
+                ", local=" + (transport != null ? transport.getLocalAddress() : null) +
+                '}';
+    }
+
+    interface BulkReader<T> {
+
+        T read(byte[] bytes, int offset, int length) throws IOException;
     }
 }
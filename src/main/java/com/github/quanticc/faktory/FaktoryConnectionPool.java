@@ -0,0 +1,245 @@
+package com.github.quanticc.faktory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Keeps separate connections for fetch, report and heartbeat traffic so a slow command on one channel
+ * never delays the others. Report connections are pooled and can be used concurrently by several threads.
+ * <p>
+ * A command that fails with an {@link IOException} on a connection kept from an earlier command is retried once
+ * on a new connection, since the server may have closed it while it sat idle. Timeouts are not retried.
+ */
+public class FaktoryConnectionPool {
+
+    private static final Logger log = LoggerFactory.getLogger(FaktoryConnectionPool.class);
+
+    public enum Channel {
+        FETCH, REPORT, HEARTBEAT
+    }
+
+    @FunctionalInterface
+    public interface Initializer {
+        void initialize(FaktoryConnection connection) throws IOException, FaktoryConnectionError;
+    }
+
+    @FunctionalInterface
+    public interface Command<T> {
+        T execute(FaktoryConnection connection) throws IOException, FaktoryConnectionError;
+    }
+
+    private final URI uri;
+    private final FaktoryMetrics metrics;
+    private final FaktoryTransportOptions transportOptions;
+    private final Initializer initializer;
+    private final FaktoryConnection fetchConnection;
+    private final FaktoryConnection heartbeatConnection;
+    private final List<FaktoryConnection> reportConnections;
+    private final BlockingQueue<FaktoryConnection> idleReportConnections;
+    private final List<FaktoryConnection> ownedConnections = new ArrayList<>();
+
+    private volatile boolean closed;
+
+    public FaktoryConnectionPool(URI uri, int size, Initializer initializer) {
+        this(uri, size, initializer, FaktoryMetrics.NOOP);
+    }
+
+    public FaktoryConnectionPool(URI uri, int size, Initializer initializer, FaktoryMetrics metrics) {
+        this(uri, size, initializer, metrics, FaktoryTransportOptions.DEFAULT);
+    }
+
+    public FaktoryConnectionPool(URI uri, int size, Initializer initializer, FaktoryMetrics metrics,
+                                 FaktoryTransportOptions transportOptions) {
+        this.uri = uri;
+        this.metrics = metrics;
+        this.transportOptions = transportOptions;
+        this.initializer = initializer;
+        this.fetchConnection = new FaktoryConnection(uri, metrics, transportOptions);
+        this.heartbeatConnection = new FaktoryConnection(uri, metrics, transportOptions);
+        this.reportConnections = new ArrayList<>();
+        this.idleReportConnections = new ArrayBlockingQueue<>(Math.max(1, size));
+        for (int i = 0; i < Math.max(1, size); i++) {
+            FaktoryConnection connection = new FaktoryConnection(uri, metrics, transportOptions);
+            reportConnections.add(connection);
+            idleReportConnections.add(connection);
+        }
+    }
+
+    public <T> T execute(Channel channel, Command<T> command) throws IOException, FaktoryConnectionError {
+        switch (channel) {
+            case FETCH:
+                synchronized (fetchConnection) {
+                    return executeOn(fetchConnection, command);
+                }
+            case HEARTBEAT:
+                synchronized (heartbeatConnection) {
+                    return executeOn(heartbeatConnection, command);
+                }
+            default:
+                FaktoryConnection connection = acquireReportConnection();
+                try {
+                    return executeOn(connection, command);
+                } finally {
+                    idleReportConnections.offer(connection);
+                }
+        }
+    }
+
+    public void connect(Channel channel) throws IOException, FaktoryConnectionError {
+        execute(channel, connection -> null);
+    }
+
+    /**
+     * Opens the fetch and heartbeat connections and up to {@code reportConnections} idle report connections at the
+     * same time, one thread each, rather than one after the other as they are first used.
+     */
+    public void connectAll(int reportConnections) throws IOException, FaktoryConnectionError {
+        List<FaktoryConnection> reports = new ArrayList<>();
+        idleReportConnections.drainTo(reports, Math.max(0, reportConnections));
+        List<Callable<Void>> connects = new ArrayList<>();
+        connects.add(() -> {
+            connect(Channel.FETCH);
+            return null;
+        });
+        connects.add(() -> {
+            connect(Channel.HEARTBEAT);
+            return null;
+        });
+        for (FaktoryConnection connection : reports) {
+            connects.add(() -> executeOn(connection, c -> null));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(connects.size(),
+                FaktoryExecutorStrategy.threadFactory("faktory-connect"));
+        try {
+            for (Future<Void> future : executor.invokeAll(connects)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while connecting", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof FaktoryConnectionError) {
+                throw (FaktoryConnectionError) e.getCause();
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Unable to connect", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            idleReportConnections.addAll(reports);
+        }
+    }
+
+    /**
+     * Opens a connection outside of the pooled channels, for callers that need exclusive ownership of it.
+     * The connection is still closed together with the pool.
+     */
+    public FaktoryConnection open() throws IOException, FaktoryConnectionError {
+        if (closed) {
+            throw new IOException("Connection pool is closed");
+        }
+        FaktoryConnection connection = new FaktoryConnection(uri, metrics, transportOptions);
+        reconnect(connection);
+        synchronized (ownedConnections) {
+            ownedConnections.removeIf(owned -> !owned.isConnected());
+            ownedConnections.add(connection);
+        }
+        return connection;
+    }
+
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    public void close() {
+        closed = true;
+        closeQuietly(fetchConnection);
+        closeQuietly(heartbeatConnection);
+        for (FaktoryConnection connection : reportConnections) {
+            closeQuietly(connection);
+        }
+        synchronized (ownedConnections) {
+            for (FaktoryConnection connection : ownedConnections) {
+                closeQuietly(connection);
+            }
+            ownedConnections.clear();
+        }
+    }
+
+    private FaktoryConnection acquireReportConnection() throws IOException {
+        try {
+            return idleReportConnections.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a report connection", e);
+        }
+    }
+
+    private <T> T executeOn(FaktoryConnection connection, Command<T> command) throws IOException, FaktoryConnectionError {
+        if (closed) {
+            throw new IOException("Connection pool is closed");
+        }
+        boolean reused = connection.isHealthy();
+        if (!reused) {
+            reconnect(connection);
+        }
+        try {
+            return command.execute(connection);
+        } catch (InterruptedIOException e) {
+            // a timeout, the server may still act on the command
+            log.warn("Discarding broken connection to {}", connection, e);
+            closeQuietly(connection);
+            throw e;
+        } catch (IOException e) {
+            closeQuietly(connection);
+            if (!reused || closed) {
+                log.warn("Discarding broken connection to {}", connection, e);
+                throw e;
+            }
+            log.debug("Connection {} was closed while idle, retrying on a new one", connection, e);
+        }
+        reconnect(connection);
+        try {
+            return command.execute(connection);
+        } catch (IOException e) {
+            log.warn("Discarding broken connection to {}", connection, e);
+            closeQuietly(connection);
+            throw e;
+        }
+    }
+
+    private void reconnect(FaktoryConnection connection) throws IOException, FaktoryConnectionError {
+        if (connection.isConnected()) {
+            log.debug("Connection {} failed health check, reconnecting", connection);
+            closeQuietly(connection);
+        }
+        try {
+            initializer.initialize(connection);
+        } catch (IOException | FaktoryConnectionError e) {
+            closeQuietly(connection);
+            throw e;
+        }
+    }
+
+    private static void closeQuietly(FaktoryConnection connection) {
+        try {
+            connection.close();
+        } catch (IOException e) {
+            log.debug("Unable to close connection", e);
+        }
+    }
+}
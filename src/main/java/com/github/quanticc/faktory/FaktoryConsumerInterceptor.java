@@ -0,0 +1,46 @@
+package com.github.quanticc.faktory;
+
+/**
+ * Hooks around every job a {@link FaktoryClient} runs, called in the order the interceptors were added to the
+ * builder, with {@link #afterExecute} in reverse. Every method defaults to doing nothing. Durations are in
+ * nanoseconds.
+ * <p>
+ * Jobs consumed through a {@link FaktoryJobPublisher} only go through {@link #jobFetched} and {@link #jobReported},
+ * since the subscriber runs them. Without interceptors the client skips these calls, and the clock readings they
+ * need, altogether.
+ */
+public interface FaktoryConsumerInterceptor {
+
+    /**
+     * Called on the worker loop thread as a job is fetched, before it waits for a free slot.
+     *
+     * @param queueWaitNanos time since Faktory enqueued the job, -1 if it has no {@code enqueued_at}
+     */
+    default void jobFetched(FaktoryJob job, long queueWaitNanos) {
+    }
+
+    /**
+     * Called on the executor thread right before the handler runs, for example to extract trace context from
+     * {@link FaktoryJob#getCustom()} or to tag the thread. The result is handed back to {@link #afterExecute}.
+     */
+    default Object beforeExecute(FaktoryJob job) {
+        return null;
+    }
+
+    /**
+     * Called once the handler finished: on the executor thread, or for an async handler on the thread completing
+     * its stage.
+     *
+     * @param context what {@link #beforeExecute} returned
+     * @param error   thrown by the handler, {@code null} on success
+     */
+    default void afterExecute(FaktoryJob job, Object context, Throwable error, long executionNanos) {
+    }
+
+    /**
+     * Called on the worker loop thread once Faktory replied to the ACK or FAIL of the job, with the time since
+     * the report was queued to be sent.
+     */
+    default void jobReported(FaktoryJob job, long reportNanos) {
+    }
+}
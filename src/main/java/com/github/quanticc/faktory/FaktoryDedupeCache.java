@@ -0,0 +1,24 @@
+package com.github.quanticc.faktory;
+
+/**
+ * Remembers the jobs a {@link FaktoryClient} is running or has recently completed, so a job Faktory delivers
+ * again, after its reservation expired or a worker crashed, is acknowledged without running twice. Jobs are known
+ * by a key, their {@code jid} unless the client was given a key function.
+ * <p>
+ * Implementations may be shared by several clients and must be thread-safe. {@link SimpleFaktoryDedupeCache}
+ * keeps keys in memory, a shared store lets workers in different processes skip each other's jobs.
+ */
+public interface FaktoryDedupeCache {
+
+    /**
+     * Claims the key of a job about to run, returning {@code false} if a job with the same key is still running
+     * or completed recently, in which case it is not run.
+     */
+    boolean tryAcquire(String key);
+
+    /**
+     * Called once a job claimed with {@link #tryAcquire(String)} finished. A completed job is remembered so its
+     * duplicates are skipped, a failed one is forgotten so Faktory's retry runs.
+     */
+    void release(String key, boolean completed);
+}
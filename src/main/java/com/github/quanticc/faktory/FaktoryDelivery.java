@@ -0,0 +1,89 @@
+package com.github.quanticc.faktory;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * A job delivered by a {@link FaktoryJobPublisher}, to be reported exactly once with {@link #ack()} or
+ * {@link #fail(Throwable)}. A job never reported is handed out again by Faktory once its reservation expires.
+ */
+public class FaktoryDelivery {
+
+    private final FaktoryJob job;
+    private final FaktoryJobPublisher publisher;
+    private final long deliveredNanos = System.nanoTime();
+    private final AtomicBoolean reported = new AtomicBoolean();
+
+    FaktoryDelivery(FaktoryJob job, FaktoryJobPublisher publisher) {
+        this.job = job;
+        this.publisher = publisher;
+    }
+
+    public FaktoryJob getJob() {
+        return job;
+    }
+
+    /**
+     * Queues an ACK, completing once Faktory replied to it.
+     */
+    public CompletableFuture<Void> ack() {
+        if (!reported.compareAndSet(false, true)) {
+            return alreadyReported();
+        }
+        return publisher.report(job, FaktoryClient.ackMessage(job), true, deliveredNanos);
+    }
+
+    /**
+     * Queues a FAIL with the given error, which may be {@code null}, completing once Faktory replied to it.
+     */
+    public CompletableFuture<Void> fail(Throwable error) {
+        if (!reported.compareAndSet(false, true)) {
+            return alreadyReported();
+        }
+        String message;
+        try {
+            message = publisher.failMessage(job, error);
+        } catch (IOException e) {
+            reported.set(false);
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+            return result;
+        }
+        return publisher.report(job, message, false, deliveredNanos);
+    }
+
+    /**
+     * Reports the job with the outcome of the given stage once it completes: ACK on success, FAIL otherwise.
+     */
+    public CompletableFuture<Void> completeWith(CompletionStage<?> stage) {
+        return stage.handle((ignored, error) -> {
+            if (error == null) {
+                return ack();
+            }
+            return fail(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+        }).thenCompose(Function.<CompletableFuture<Void>>identity()).toCompletableFuture();
+    }
+
+    public boolean isReported() {
+        return reported.get();
+    }
+
+    private CompletableFuture<Void> alreadyReported() {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        result.completeExceptionally(new IllegalStateException("Job " + job.getJobId() + " was already reported"));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "FaktoryDelivery{" +
+                "jobId='" + job.getJobId() + '\'' +
+                ", jobType='" + job.getJobType() + '\'' +
+                ", reported=" + reported.get() +
+                '}';
+    }
+}
@@ -0,0 +1,192 @@
+package com.github.quanticc.faktory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides which {@link ExecutorService} runs the jobs fetched by a {@link FaktoryClient}.
+ */
+public abstract class FaktoryExecutorStrategy {
+
+    private static final Logger log = LoggerFactory.getLogger(FaktoryExecutorStrategy.class);
+
+    /**
+     * A fixed pool with one thread per concurrency slot.
+     */
+    public static FaktoryExecutorStrategy fixed() {
+        return new Fixed(0);
+    }
+
+    /**
+     * A fixed pool of the given size, which must be at least the client concurrency.
+     */
+    public static FaktoryExecutorStrategy fixed(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+        return new Fixed(threads);
+    }
+
+    /**
+     * A work-stealing pool sized to the available processors, suited to CPU-bound jobs. This is the default.
+     */
+    public static FaktoryExecutorStrategy workStealing() {
+        return new WorkStealing();
+    }
+
+    /**
+     * One virtual thread per job when running on a JDK that supports them, otherwise a fixed pool with one
+     * thread per concurrency slot.
+     */
+    public static FaktoryExecutorStrategy virtualThreads() {
+        return new VirtualThreads();
+    }
+
+    /**
+     * A user supplied executor. It is not shut down by the client.
+     */
+    public static FaktoryExecutorStrategy of(ExecutorService executor) {
+        return new Supplied(Objects.requireNonNull(executor));
+    }
+
+    abstract ExecutorService create(int concurrency);
+
+    void validate(int concurrency) {
+    }
+
+    boolean isShutdownWithClient() {
+        return true;
+    }
+
+    static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class Fixed extends FaktoryExecutorStrategy {
+
+        private final int threads;
+
+        Fixed(int threads) {
+            this.threads = threads;
+        }
+
+        @Override
+        ExecutorService create(int concurrency) {
+            return Executors.newFixedThreadPool(threads > 0 ? threads : concurrency, threadFactory("faktory-worker"));
+        }
+
+        @Override
+        void validate(int concurrency) {
+            if (threads > 0 && threads < concurrency) {
+                throw new IllegalArgumentException("A fixed pool of " + threads
+                        + " threads cannot run a concurrency of " + concurrency);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "fixed(" + (threads > 0 ? threads : "concurrency") + ")";
+        }
+    }
+
+    private static class WorkStealing extends FaktoryExecutorStrategy {
+
+        @Override
+        ExecutorService create(int concurrency) {
+            return Executors.newWorkStealingPool();
+        }
+
+        @Override
+        void validate(int concurrency) {
+            int parallelism = Runtime.getRuntime().availableProcessors();
+            if (parallelism < concurrency) {
+                log.info("Work-stealing pool runs {} jobs in parallel, below the concurrency of {}; "
+                        + "blocking jobs will queue", parallelism, concurrency);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "workStealing";
+        }
+    }
+
+    private static class VirtualThreads extends FaktoryExecutorStrategy {
+
+        private static final Method FACTORY = findFactory();
+
+        private static Method findFactory() {
+            try {
+                return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+
+        @Override
+        ExecutorService create(int concurrency) {
+            if (FACTORY != null) {
+                try {
+                    return (ExecutorService) FACTORY.invoke(null);
+                } catch (ReflectiveOperationException e) {
+                    log.warn("Unable to create a virtual thread executor", e);
+                }
+            }
+            log.info("Virtual threads are not available, using a fixed pool of {} threads", concurrency);
+            return Executors.newFixedThreadPool(concurrency, threadFactory("faktory-worker"));
+        }
+
+        @Override
+        public String toString() {
+            return "virtualThreads";
+        }
+    }
+
+    private static class Supplied extends FaktoryExecutorStrategy {
+
+        private final ExecutorService executor;
+
+        Supplied(ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        ExecutorService create(int concurrency) {
+            return executor;
+        }
+
+        @Override
+        void validate(int concurrency) {
+            if (executor instanceof ThreadPoolExecutor) {
+                int maximumPoolSize = ((ThreadPoolExecutor) executor).getMaximumPoolSize();
+                if (maximumPoolSize < concurrency) {
+                    throw new IllegalArgumentException("The supplied executor allows at most " + maximumPoolSize
+                            + " threads, below the concurrency of " + concurrency);
+                }
+            }
+        }
+
+        @Override
+        boolean isShutdownWithClient() {
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "supplied(" + executor + ")";
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.github.quanticc.faktory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides the order in which the queues of a {@link FaktoryClient} are listed in each {@code FETCH}. Faktory
+ * returns a job from the first non-empty queue, so the order is the priority.
+ */
+public abstract class FaktoryFetchStrategy {
+
+    /**
+     * Always the configured order: a queue is only fetched from when every queue before it is empty.
+     */
+    public static FaktoryFetchStrategy strict() {
+        return new Strict();
+    }
+
+    /**
+     * A random order on each fetch, where a queue comes first with a probability proportional to its weight.
+     * Queues without a weight count as 1.
+     */
+    public static FaktoryFetchStrategy weighted(Map<String, Integer> weights) {
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            if (entry.getValue() == null || entry.getValue() < 1) {
+                throw new IllegalArgumentException("Weight must be positive: " + entry);
+            }
+        }
+        return new Weighted(new HashMap<>(weights));
+    }
+
+    /**
+     * The configured order rotated by one queue on each fetch, so every queue takes turns at the front.
+     */
+    public static FaktoryFetchStrategy roundRobin() {
+        return new RoundRobin();
+    }
+
+    /**
+     * Wraps a strategy so queues that came back empty are left out of fetches for the given time. When every
+     * queue is backing off they are all fetched, since a {@code FETCH} needs at least one queue.
+     */
+    static FaktoryFetchStrategy emptyQueueBackoff(FaktoryFetchStrategy delegate, long backoffMillis) {
+        return new EmptyQueueBackoff(delegate, TimeUnit.MILLISECONDS.toNanos(backoffMillis));
+    }
+
+    /**
+     * Returns the queues to fetch from, highest priority first. The given list must not be modified.
+     */
+    public abstract List<String> select(List<String> queues);
+
+    /**
+     * Called with the result of every fetch, {@code null} when all the selected queues were empty.
+     */
+    public void fetched(List<String> selected, FaktoryJob job) {
+    }
+
+    private static class Strict extends FaktoryFetchStrategy {
+
+        @Override
+        public List<String> select(List<String> queues) {
+            return queues;
+        }
+
+        @Override
+        public String toString() {
+            return "strict";
+        }
+    }
+
+    private static class Weighted extends FaktoryFetchStrategy {
+
+        private final Map<String, Integer> weights;
+
+        Weighted(Map<String, Integer> weights) {
+            this.weights = weights;
+        }
+
+        @Override
+        public List<String> select(List<String> queues) {
+            int size = queues.size();
+            if (size < 2) {
+                return queues;
+            }
+            List<String> remaining = new ArrayList<>(queues);
+            int[] remainingWeights = new int[size];
+            long total = 0;
+            for (int i = 0; i < size; i++) {
+                remainingWeights[i] = weights.getOrDefault(queues.get(i), 1);
+                total += remainingWeights[i];
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            List<String> order = new ArrayList<>(size);
+            // draw without replacement, each draw proportional to the weights still in the pool
+            for (int n = size; n > 0; n--) {
+                long pick = random.nextLong(total);
+                int i = 0;
+                while (pick >= remainingWeights[i]) {
+                    pick -= remainingWeights[i++];
+                }
+                order.add(remaining.get(i));
+                total -= remainingWeights[i];
+                remaining.remove(i);
+                System.arraycopy(remainingWeights, i + 1, remainingWeights, i, n - i - 1);
+            }
+            return order;
+        }
+
+        @Override
+        public String toString() {
+            return "weighted" + weights;
+        }
+    }
+
+    private static class RoundRobin extends FaktoryFetchStrategy {
+
+        private final AtomicInteger next = new AtomicInteger();
+
+        @Override
+        public List<String> select(List<String> queues) {
+            int size = queues.size();
+            if (size < 2) {
+                return queues;
+            }
+            List<String> order = new ArrayList<>(queues);
+            Collections.rotate(order, -Math.floorMod(next.getAndIncrement(), size));
+            return order;
+        }
+
+        @Override
+        public String toString() {
+            return "roundRobin";
+        }
+    }
+
+    private static class EmptyQueueBackoff extends FaktoryFetchStrategy {
+
+        private final FaktoryFetchStrategy delegate;
+        private final long backoffNanos;
+        private final Map<String, Long> emptyUntil = new ConcurrentHashMap<>();
+
+        EmptyQueueBackoff(FaktoryFetchStrategy delegate, long backoffNanos) {
+            this.delegate = delegate;
+            this.backoffNanos = backoffNanos;
+        }
+
+        @Override
+        public List<String> select(List<String> queues) {
+            List<String> order = delegate.select(queues);
+            if (emptyUntil.isEmpty()) {
+                return order;
+            }
+            long now = System.nanoTime();
+            List<String> selected = new ArrayList<>(order.size());
+            for (String queue : order) {
+                Long until = emptyUntil.get(queue);
+                if (until == null) {
+                    selected.add(queue);
+                } else if (until - now <= 0) {
+                    emptyUntil.remove(queue, until);
+                    selected.add(queue);
+                }
+            }
+            return selected.isEmpty() ? order : selected;
+        }
+
+        @Override
+        public void fetched(List<String> selected, FaktoryJob job) {
+            if (job == null) {
+                long until = System.nanoTime() + backoffNanos;
+                for (String queue : selected) {
+                    emptyUntil.put(queue, until);
+                }
+            }
+            delegate.fetched(selected, job);
+        }
+
+        @Override
+        public String toString() {
+            return delegate + " with empty queue backoff of " + TimeUnit.NANOSECONDS.toMillis(backoffNanos) + " ms";
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.github.quanticc.faktory;
+
+/**
+ * Faktory refused the handshake, for example an unsupported protocol version or a wrong password. Connecting again
+ * would fail the same way, so the worker stops instead of retrying.
+ */
+public class FaktoryHandshakeError extends FaktoryConnectionError {
+
+    private static final long serialVersionUID = 1L;
+
+    public FaktoryHandshakeError(String response) {
+        super(response);
+    }
+}
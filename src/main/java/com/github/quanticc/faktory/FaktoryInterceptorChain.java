@@ -0,0 +1,99 @@
+package com.github.quanticc.faktory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Combines the interceptors added to a {@link FaktoryClient.Builder} into one, or none at all when the list is
+ * empty so the client can skip interception with a single null check.
+ */
+final class FaktoryInterceptorChain {
+
+    private FaktoryInterceptorChain() {
+    }
+
+    static FaktoryProducerInterceptor producer(List<FaktoryProducerInterceptor> interceptors) {
+        if (interceptors.isEmpty()) {
+            return null;
+        }
+        if (interceptors.size() == 1) {
+            return interceptors.get(0);
+        }
+        return new Producer(interceptors.toArray(new FaktoryProducerInterceptor[0]));
+    }
+
+    static FaktoryConsumerInterceptor consumer(List<FaktoryConsumerInterceptor> interceptors) {
+        if (interceptors.isEmpty()) {
+            return null;
+        }
+        if (interceptors.size() == 1) {
+            return interceptors.get(0);
+        }
+        return new Consumer(interceptors.toArray(new FaktoryConsumerInterceptor[0]));
+    }
+
+    private static class Producer implements FaktoryProducerInterceptor {
+
+        private final FaktoryProducerInterceptor[] interceptors;
+
+        Producer(FaktoryProducerInterceptor[] interceptors) {
+            this.interceptors = interceptors;
+        }
+
+        @Override
+        public FaktoryJob beforePush(FaktoryJob job) {
+            for (FaktoryProducerInterceptor interceptor : interceptors) {
+                job = interceptor.beforePush(job);
+            }
+            return job;
+        }
+
+        @Override
+        public void afterPush(FaktoryJob job, Throwable error, long pushNanos) {
+            for (int i = interceptors.length - 1; i >= 0; i--) {
+                interceptors[i].afterPush(job, error, pushNanos);
+            }
+        }
+    }
+
+    private static class Consumer implements FaktoryConsumerInterceptor {
+
+        private final FaktoryConsumerInterceptor[] interceptors;
+
+        Consumer(FaktoryConsumerInterceptor[] interceptors) {
+            this.interceptors = interceptors;
+        }
+
+        @Override
+        public void jobFetched(FaktoryJob job, long queueWaitNanos) {
+            for (FaktoryConsumerInterceptor interceptor : interceptors) {
+                interceptor.jobFetched(job, queueWaitNanos);
+            }
+        }
+
+        @Override
+        public Object beforeExecute(FaktoryJob job) {
+            List<Object> contexts = new ArrayList<>(interceptors.length);
+            for (FaktoryConsumerInterceptor interceptor : interceptors) {
+                contexts.add(interceptor.beforeExecute(job));
+            }
+            return contexts;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void afterExecute(FaktoryJob job, Object context, Throwable error, long executionNanos) {
+            List<Object> contexts = (List<Object>) context;
+            for (int i = interceptors.length - 1; i >= 0; i--) {
+                interceptors[i].afterExecute(job, contexts.get(i), error, executionNanos);
+            }
+        }
+
+        @Override
+        public void jobReported(FaktoryJob job, long reportNanos) {
+            for (FaktoryConsumerInterceptor interceptor : interceptors) {
+                interceptor.jobReported(job, reportNanos);
+            }
+        }
+    }
+}
@@ -1,35 +1,182 @@
 package com.github.quanticc.faktory;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.*;
 
 @JsonDeserialize(builder = FaktoryJob.Builder.class)
-@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonSerialize(using = FaktoryJobSerializer.class)
 public class FaktoryJob {
 
-    @JsonProperty("jid")
+    private static final TypeReference<List<Object>> ARGS_TYPE = new TypeReference<List<Object>>() {
+    };
+    private static final TypeReference<Map<String, Object>> CUSTOM_TYPE = new TypeReference<Map<String, Object>>() {
+    };
+
     private final String jobId;
-    @JsonProperty("jobtype")
     private final String jobType;
-    private final List<Object> args;
-    private final Map<String, Object> custom;
+    private final String queue;
+    private final Integer reserveFor;
+    private final String at;
+    private final Integer retry;
+    private final Integer priority;
+    private final Integer backtrace;
+    private final String createdAt;
+    private final String enqueuedAt;
+    private volatile List<Object> args;
+    private volatile Map<String, Object> custom;
+
+    // args of a fetched job, kept as tokens so typed tasks can bind them without building maps first
+    private final TokenBuffer rawArgs;
+
+    // a lazily parsed job keeps its own copy of the reply and the bounds of args and custom within it
+    private final ObjectMapper payloadMapper;
+    private final byte[] payload;
+    private final int argsStart, argsEnd, customStart, customEnd;
 
-    private FaktoryJob(String jobId, String jobType, List<Object> args, Map<String, Object> custom) {
-        this.jobId = Objects.requireNonNull(jobId);
-        this.jobType = Objects.requireNonNull(jobType);
-        this.args = args == null ? Collections.emptyList() : args;
-        this.custom = custom;
+    private FaktoryJob(Builder builder, ObjectMapper payloadMapper, byte[] payload,
+                       int argsStart, int argsEnd, int customStart, int customEnd) {
+        this.jobId = Objects.requireNonNull(builder.jobId);
+        this.jobType = Objects.requireNonNull(builder.jobType);
+        this.queue = builder.queue;
+        this.reserveFor = builder.reserveFor;
+        this.at = builder.at;
+        this.retry = builder.retry;
+        this.priority = builder.priority;
+        this.backtrace = builder.backtrace;
+        this.createdAt = builder.createdAt;
+        this.enqueuedAt = builder.enqueuedAt;
+        this.rawArgs = builder.rawArgs;
+        this.custom = builder.custom;
+        this.payloadMapper = payloadMapper;
+        this.payload = payload;
+        this.argsStart = argsStart;
+        this.argsEnd = argsEnd;
+        this.customStart = customStart;
+        this.customEnd = customEnd;
+        if (payload != null) {
+            this.args = argsStart == argsEnd ? Collections.emptyList() : null;
+        } else {
+            this.args = builder.args == null && rawArgs == null ? Collections.emptyList() : builder.args;
+        }
     }
 
     public static Builder builder() {
         return new Builder();
     }
 
+    /**
+     * A builder starting from this job, with its own copy of {@code custom} so entries can be added without
+     * changing this job.
+     */
+    public Builder toBuilder() {
+        Map<String, Object> custom = getCustom();
+        return new Builder()
+                .withJobId(jobId)
+                .withJobType(jobType)
+                .withArgs(getArgs())
+                .withCustom(custom == null ? null : new LinkedHashMap<>(custom))
+                .withQueue(queue)
+                .withReserveFor(reserveFor)
+                .withAt(at)
+                .withRetry(retry)
+                .withPriority(priority)
+                .withBacktrace(backtrace)
+                .withCreatedAt(createdAt)
+                .withEnqueuedAt(enqueuedAt);
+    }
+
+    /**
+     * Reads a job keeping a copy of its JSON, where only the scalar fields are read up front; {@code args} and
+     * {@code custom} are parsed the first time they are accessed.
+     */
+    static FaktoryJob lazy(ObjectMapper mapper, byte[] bytes, int offset, int length) throws IOException {
+        byte[] payload = Arrays.copyOfRange(bytes, offset, offset + length);
+        Builder builder = new Builder();
+        int argsStart = 0, argsEnd = 0, customStart = 0, customEnd = 0;
+        try (JsonParser parser = mapper.getFactory().createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a job object, got " + parser.getCurrentToken());
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "jid":
+                        builder.jobId = parser.getValueAsString();
+                        break;
+                    case "jobtype":
+                        builder.jobType = parser.getValueAsString();
+                        break;
+                    case "queue":
+                        builder.queue = parser.getValueAsString();
+                        break;
+                    case "reserve_for":
+                        builder.reserveFor = intValue(parser, value);
+                        break;
+                    case "at":
+                        builder.at = parser.getValueAsString();
+                        break;
+                    case "retry":
+                        builder.retry = intValue(parser, value);
+                        break;
+                    case "priority":
+                        builder.priority = intValue(parser, value);
+                        break;
+                    case "backtrace":
+                        builder.backtrace = intValue(parser, value);
+                        break;
+                    case "created_at":
+                        builder.createdAt = parser.getValueAsString();
+                        break;
+                    case "enqueued_at":
+                        builder.enqueuedAt = parser.getValueAsString();
+                        break;
+                    case "args":
+                        if (value == JsonToken.START_ARRAY) {
+                            argsStart = (int) parser.getTokenLocation().getByteOffset();
+                            parser.skipChildren();
+                            argsEnd = (int) parser.getCurrentLocation().getByteOffset();
+                        }
+                        break;
+                    case "custom":
+                        if (value == JsonToken.START_OBJECT) {
+                            customStart = (int) parser.getTokenLocation().getByteOffset();
+                            parser.skipChildren();
+                            customEnd = (int) parser.getCurrentLocation().getByteOffset();
+                        }
+                        break;
+                    default:
+                        break;
+                }
+                parser.skipChildren(); // unknown fields, and known ones holding an unexpected structure
+            }
+        }
+        if (builder.jobId == null || builder.jobType == null) {
+            throw new IOException("Job without jid or jobtype: "
+                    + new String(payload, 0, Math.min(payload.length, 200), StandardCharsets.UTF_8));
+        }
+        return new FaktoryJob(builder, mapper, payload, argsStart, argsEnd, customStart, customEnd);
+    }
+
+    private static Integer intValue(JsonParser parser, JsonToken value) throws IOException {
+        return value == JsonToken.VALUE_NULL ? null : parser.getValueAsInt();
+    }
+
     public String getJobId() {
         return jobId;
     }
@@ -38,12 +185,110 @@ public class FaktoryJob {
         return jobType;
     }
 
+    /**
+     * Queue to push to, {@code null} for Faktory's {@code default}.
+     */
+    public String getQueue() {
+        return queue;
+    }
+
+    /**
+     * Seconds Faktory keeps the job reserved for a worker before handing it out again, {@code null} for the
+     * server default of 1800.
+     */
+    public Integer getReserveFor() {
+        return reserveFor;
+    }
+
+    /**
+     * RFC 3339 time the job is scheduled for, {@code null} to run it right away.
+     */
+    public String getAt() {
+        return at;
+    }
+
+    /**
+     * Number of retries on failure, {@code null} for the server default of 25.
+     */
+    public Integer getRetry() {
+        return retry;
+    }
+
+    /**
+     * Priority from 1 to 9 within the queue, {@code null} for the server default of 5.
+     */
+    public Integer getPriority() {
+        return priority;
+    }
+
+    /**
+     * Number of backtrace lines to keep on failure.
+     */
+    public Integer getBacktrace() {
+        return backtrace;
+    }
+
+    /**
+     * Set by Faktory when the job was created.
+     */
+    public String getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Set by Faktory when the job was last enqueued.
+     */
+    public String getEnqueuedAt() {
+        return enqueuedAt;
+    }
+
     public List<Object> getArgs() {
-        return args;
+        List<Object> result = args;
+        if (result == null) {
+            try (JsonParser parser = getArgsParser()) {
+                result = parser.readValueAs(ARGS_TYPE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read args of job " + jobId, e);
+            }
+            args = result;
+        }
+        return result;
+    }
+
+    /**
+     * Streams the args array as read from Faktory without building them, or returns {@code null} if the job
+     * was built locally.
+     */
+    public JsonParser getArgsParser() throws IOException {
+        if (payload != null) {
+            if (argsStart == argsEnd) {
+                return null;
+            }
+            return payloadMapper.getFactory().createParser(payload, argsStart, argsEnd - argsStart);
+        }
+        return rawArgs != null ? rawArgs.asParser() : null;
     }
 
     public Map<String, Object> getCustom() {
-        return custom;
+        Map<String, Object> result = custom;
+        if (result == null && payload != null && customStart != customEnd) {
+            try (JsonParser parser = payloadMapper.getFactory().createParser(payload, customStart,
+                    customEnd - customStart)) {
+                result = parser.readValueAs(CUSTOM_TYPE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read custom of job " + jobId, e);
+            }
+            custom = result;
+        }
+        return result;
+    }
+
+    /**
+     * Whether the args are still only held as read from Faktory, so a serializer can copy them from
+     * {@link #getArgsParser()} without building them.
+     */
+    boolean hasUnreadArgs() {
+        return args == null;
     }
 
     @JsonPOJOBuilder
@@ -55,7 +300,16 @@ public class FaktoryJob {
         @JsonProperty("jobtype")
         private String jobType;
         private List<Object> args = new ArrayList<>();
+        private TokenBuffer rawArgs;
         private Map<String, Object> custom;
+        private String queue;
+        private Integer reserveFor;
+        private String at;
+        private Integer retry;
+        private Integer priority;
+        private Integer backtrace;
+        private String createdAt;
+        private String enqueuedAt;
 
         public Builder withJobId(String jobId) {
             this.jobId = jobId;
@@ -67,8 +321,17 @@ public class FaktoryJob {
             return this;
         }
 
+        @JsonIgnore
         public Builder withArgs(List<Object> args) {
             this.args = args;
+            this.rawArgs = null;
+            return this;
+        }
+
+        @JsonProperty("args")
+        Builder withRawArgs(TokenBuffer rawArgs) {
+            this.args = null;
+            this.rawArgs = rawArgs;
             return this;
         }
 
@@ -85,8 +348,58 @@ public class FaktoryJob {
             return this;
         }
 
+        public Builder withQueue(String queue) {
+            this.queue = queue;
+            return this;
+        }
+
+        @JsonProperty("reserve_for")
+        public Builder withReserveFor(Integer reserveFor) {
+            this.reserveFor = reserveFor;
+            return this;
+        }
+
+        @JsonProperty("at")
+        public Builder withAt(String at) {
+            this.at = at;
+            return this;
+        }
+
+        @JsonIgnore
+        public Builder withAt(Instant at) {
+            this.at = at == null ? null : at.toString();
+            return this;
+        }
+
+        public Builder withRetry(Integer retry) {
+            this.retry = retry;
+            return this;
+        }
+
+        public Builder withPriority(Integer priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        public Builder withBacktrace(Integer backtrace) {
+            this.backtrace = backtrace;
+            return this;
+        }
+
+        @JsonProperty("created_at")
+        public Builder withCreatedAt(String createdAt) {
+            this.createdAt = createdAt;
+            return this;
+        }
+
+        @JsonProperty("enqueued_at")
+        public Builder withEnqueuedAt(String enqueuedAt) {
+            this.enqueuedAt = enqueuedAt;
+            return this;
+        }
+
         public FaktoryJob build() {
-            return new FaktoryJob(jobId, jobType, args, custom);
+            return new FaktoryJob(this, null, null, 0, 0, 0, 0);
         }
 
     }
@@ -0,0 +1,364 @@
+package com.github.quanticc.faktory;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers fetched jobs to a single Reactive Streams {@link Subscriber}, fetching only as many jobs as it
+ * requested, so the subscriber's demand is the backpressure. Each {@link FaktoryDelivery} is reported by the
+ * subscriber whenever its work completes; ACKs and FAILs from any thread are pipelined to Faktory in batches by a
+ * reporter thread, which keeps them while Faktory is unreachable.
+ * <p>
+ * Created by {@link FaktoryClient#publisher()}. On Java 9 and later it can be adapted to
+ * {@code java.util.concurrent.Flow} with {@code org.reactivestreams.FlowAdapters}.
+ */
+public class FaktoryJobPublisher implements Publisher<FaktoryDelivery>, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(FaktoryJobPublisher.class);
+    private static final long IDLE_WAIT_MILLIS = 1000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 30_000;
+    private static final long CLOSE_WAIT_MILLIS = 5000;
+    private static final Report STOP = new Report(null, null, false, 0);
+
+    private final FaktoryClient client;
+    private final FaktoryMetrics metrics;
+    private final FaktoryConsumerInterceptor interceptor;
+    private final int reportBatchSize;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private final AtomicLong demand = new AtomicLong();
+    private final BlockingQueue<Report> reports = new LinkedBlockingQueue<>();
+    private final Object demandChanged = new Object();
+
+    private volatile Subscriber<? super FaktoryDelivery> subscriber;
+    private volatile boolean cancelled;
+    private volatile boolean subscriptionCancelled;
+    private volatile boolean closed;
+    private volatile Throwable requestError;
+    private Thread fetcher;
+    private Thread reporter;
+
+    FaktoryJobPublisher(FaktoryClient client, int reportBatchSize) {
+        this.client = client;
+        this.metrics = client.getMetrics();
+        this.interceptor = client.getConsumerInterceptor();
+        this.reportBatchSize = Math.max(1, reportBatchSize);
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super FaktoryDelivery> subscriber) {
+        Objects.requireNonNull(subscriber);
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("A FaktoryJobPublisher only allows a single subscriber"));
+            return;
+        }
+        this.subscriber = subscriber;
+        synchronized (this) {
+            reporter = new Thread(this::reportLoop, "faktory-publisher-reports");
+            reporter.setDaemon(true);
+            reporter.start();
+        }
+        client.startHeartbeat();
+        subscriber.onSubscribe(new JobSubscription());
+        boolean closedEarly;
+        synchronized (this) {
+            closedEarly = closed;
+            if (!closedEarly) {
+                fetcher = new Thread(this::fetchLoop, "faktory-publisher-fetch");
+                fetcher.setDaemon(true);
+                fetcher.start();
+            }
+        }
+        if (closedEarly && !subscriptionCancelled) {
+            subscriber.onComplete();
+        }
+    }
+
+    /**
+     * Jobs requested by the subscriber and not yet delivered.
+     */
+    public long getDemand() {
+        return demand.get();
+    }
+
+    /**
+     * Stops fetching, sends the reports already queued, waiting up to 5 seconds for them, and stops heartbeats.
+     * Reports made afterwards fail. Delivered jobs never reported are handed out again once their reservation
+     * expires. The subscriber receives {@code onComplete} once the fetch in flight returned, unless it cancelled.
+     */
+    @Override
+    public void close() {
+        Thread currentFetcher;
+        Thread currentReporter;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            cancelled = true;
+            currentFetcher = fetcher;
+            currentReporter = reporter;
+        }
+        wakeUp();
+        reports.add(STOP);
+        try {
+            if (currentReporter != null) {
+                currentReporter.join(CLOSE_WAIT_MILLIS);
+            }
+            if (currentFetcher != null) {
+                currentFetcher.join(CLOSE_WAIT_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        client.stopHeartbeat();
+        Report report;
+        while ((report = reports.poll()) != null) {
+            if (report != STOP) {
+                report.result.completeExceptionally(new IOException("Publisher closed before the report was sent"));
+            }
+        }
+    }
+
+    CompletableFuture<Void> report(FaktoryJob job, String message, boolean ack, long deliveredNanos) {
+        Report report = new Report(job, message, ack, System.nanoTime() - deliveredNanos);
+        if (closed) {
+            report.result.completeExceptionally(new IOException("Publisher is closed"));
+        } else {
+            reports.add(report);
+        }
+        return report.result;
+    }
+
+    String failMessage(FaktoryJob job, Throwable error) throws IOException {
+        return client.failMessage(job, error);
+    }
+
+    private void fetchLoop() {
+        Subscriber<? super FaktoryDelivery> current = subscriber;
+        boolean terminated = false;
+        int attempts = 0;
+        while (!cancelled) {
+            Throwable error = requestError;
+            if (error != null) {
+                cancelled = true;
+                terminated = true;
+                current.onError(error);
+                break;
+            }
+            if (client.isTerminateRequested()) {
+                log.warn("Faktory has asked this worker to shutdown, completing the job stream");
+                cancelled = true;
+                terminated = true;
+                current.onComplete();
+                break;
+            }
+            if (demand.get() == 0 || client.isQuietRequested()) {
+                awaitDemand();
+                continue;
+            }
+            FaktoryJob job;
+            try {
+                job = client.fetch();
+                attempts = 0;
+            } catch (IOException | FaktoryConnectionError e) {
+                if (cancelled) {
+                    break;
+                }
+                long delay = retryDelay(attempts++);
+                log.warn("Unable to fetch, retrying in {} ms", delay, e);
+                pause(delay);
+                continue;
+            }
+            if (job == null) {
+                continue;
+            }
+            metrics.jobFetched(job.getJobType());
+            if (interceptor != null) {
+                interceptor.jobFetched(job, FaktoryClient.queueWaitNanos(job));
+            }
+            FaktoryDelivery delivery = new FaktoryDelivery(job, this);
+            if (cancelled) {
+                // fetched while the subscriber cancelled, hand it back for another worker
+                delivery.fail(new CancellationException("Subscription cancelled before the job was delivered"));
+                break;
+            }
+            demand.getAndUpdate(n -> n == Long.MAX_VALUE ? n : n - 1);
+            try {
+                current.onNext(delivery);
+            } catch (RuntimeException e) {
+                log.error("Subscriber failed on {}, cancelling the subscription", delivery, e);
+                subscriptionCancelled = true;
+                cancelled = true;
+            }
+        }
+        log.debug("Publisher stopped fetching");
+        if (closed && !terminated && !subscriptionCancelled) {
+            // signalled from the fetcher so it never overlaps onNext
+            current.onComplete();
+        }
+    }
+
+    private void reportLoop() {
+        List<Report> batch = new ArrayList<>(reportBatchSize);
+        List<String> messages = new ArrayList<>(reportBatchSize);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                batch.add(reports.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            reports.drainTo(batch, reportBatchSize - 1);
+            if (batch.remove(STOP)) {
+                stopping = true;
+                reports.drainTo(batch);
+            }
+            for (int start = 0; start < batch.size(); start += reportBatchSize) {
+                List<Report> chunk = batch.subList(start, Math.min(batch.size(), start + reportBatchSize));
+                for (Report report : chunk) {
+                    messages.add(report.message);
+                }
+                send(chunk, messages, stopping);
+                messages.clear();
+            }
+            batch.clear();
+        }
+        log.debug("Publisher stopped reporting");
+    }
+
+    /**
+     * Sends a batch of reports, retrying while Faktory is unreachable unless the publisher is closing.
+     */
+    private void send(List<Report> chunk, List<String> messages, boolean stopping) {
+        int attempts = 0;
+        while (true) {
+            try {
+                client.sendReports(messages);
+                long now = System.nanoTime();
+                for (Report report : chunk) {
+                    if (interceptor != null) {
+                        interceptor.jobReported(report.job, now - report.queuedNanos);
+                    }
+                    if (report.ack) {
+                        metrics.jobAcked(report.job.getJobType(), report.pendingNanos);
+                    } else {
+                        metrics.jobFailed(report.job.getJobType(), report.pendingNanos);
+                    }
+                    report.result.complete(null);
+                }
+                return;
+            } catch (IOException | FaktoryConnectionError e) {
+                if (stopping || closed) {
+                    for (Report report : chunk) {
+                        report.result.completeExceptionally(e);
+                    }
+                    return;
+                }
+                long delay = retryDelay(attempts++);
+                log.warn("Unable to send {} reports, retrying in {} ms", chunk.size(), delay, e);
+                pause(delay);
+            }
+        }
+    }
+
+    private void awaitDemand() {
+        synchronized (demandChanged) {
+            if (!cancelled && requestError == null && (demand.get() == 0 || client.isQuietRequested())) {
+                try {
+                    demandChanged.wait(IDLE_WAIT_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancelled = true;
+                }
+            }
+        }
+    }
+
+    private void wakeUp() {
+        synchronized (demandChanged) {
+            demandChanged.notifyAll();
+        }
+    }
+
+    private static long retryDelay(int attempts) {
+        long ceiling = Math.min(MAX_RETRY_DELAY_MILLIS, 100L << Math.min(attempts, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    /**
+     * Waits before a retry, returning early when the publisher is closed.
+     */
+    private void pause(long millis) {
+        synchronized (demandChanged) {
+            if (!closed) {
+                try {
+                    demandChanged.wait(millis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private class JobSubscription implements Subscription {
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                requestError = new IllegalArgumentException("Requested " + n + " jobs, must be positive");
+            } else {
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            wakeUp();
+        }
+
+        @Override
+        public void cancel() {
+            subscriptionCancelled = true;
+            cancelled = true;
+            wakeUp();
+        }
+    }
+
+    private static class Report {
+
+        private final FaktoryJob job;
+        private final String message;
+        private final boolean ack;
+        private final long pendingNanos;
+        private final long queuedNanos = System.nanoTime();
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        Report(FaktoryJob job, String message, boolean ack, long pendingNanos) {
+            this.job = job;
+            this.message = message;
+            this.ack = ack;
+            this.pendingNanos = pendingNanos;
+        }
+    }
+}
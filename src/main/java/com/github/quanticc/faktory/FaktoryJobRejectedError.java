@@ -0,0 +1,14 @@
+package com.github.quanticc.faktory;
+
+/**
+ * Faktory replied to a PUSH with an error, so the job itself was refused and sending it again would fail the
+ * same way. Failures to connect or to authenticate are reported with other exceptions.
+ */
+public class FaktoryJobRejectedError extends FaktoryConnectionError {
+
+    private static final long serialVersionUID = 1L;
+
+    public FaktoryJobRejectedError(String response) {
+        super(response);
+    }
+}
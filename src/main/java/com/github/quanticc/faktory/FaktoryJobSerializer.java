@@ -0,0 +1,80 @@
+package com.github.quanticc.faktory;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * Writes a {@link FaktoryJob} field by field, skipping bean introspection on every push. Args that were never
+ * read are copied token by token from the fetched job.
+ */
+public class FaktoryJobSerializer extends StdSerializer<FaktoryJob> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final SerializedString JID = new SerializedString("jid");
+    private static final SerializedString JOBTYPE = new SerializedString("jobtype");
+    private static final SerializedString QUEUE = new SerializedString("queue");
+    private static final SerializedString ARGS = new SerializedString("args");
+    private static final SerializedString CUSTOM = new SerializedString("custom");
+    private static final SerializedString RESERVE_FOR = new SerializedString("reserve_for");
+    private static final SerializedString AT = new SerializedString("at");
+    private static final SerializedString RETRY = new SerializedString("retry");
+    private static final SerializedString PRIORITY = new SerializedString("priority");
+    private static final SerializedString BACKTRACE = new SerializedString("backtrace");
+    private static final SerializedString CREATED_AT = new SerializedString("created_at");
+    private static final SerializedString ENQUEUED_AT = new SerializedString("enqueued_at");
+
+    public FaktoryJobSerializer() {
+        super(FaktoryJob.class);
+    }
+
+    @Override
+    public void serialize(FaktoryJob job, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName(JID);
+        gen.writeString(job.getJobId());
+        gen.writeFieldName(JOBTYPE);
+        gen.writeString(job.getJobType());
+        writeString(gen, QUEUE, job.getQueue());
+        gen.writeFieldName(ARGS);
+        if (job.hasUnreadArgs()) {
+            try (JsonParser args = job.getArgsParser()) {
+                args.nextToken();
+                gen.copyCurrentStructure(args);
+            }
+        } else {
+            provider.defaultSerializeValue(job.getArgs(), gen);
+        }
+        if (job.getCustom() != null) {
+            gen.writeFieldName(CUSTOM);
+            provider.defaultSerializeValue(job.getCustom(), gen);
+        }
+        writeNumber(gen, RESERVE_FOR, job.getReserveFor());
+        writeString(gen, AT, job.getAt());
+        writeNumber(gen, RETRY, job.getRetry());
+        writeNumber(gen, PRIORITY, job.getPriority());
+        writeNumber(gen, BACKTRACE, job.getBacktrace());
+        writeString(gen, CREATED_AT, job.getCreatedAt());
+        writeString(gen, ENQUEUED_AT, job.getEnqueuedAt());
+        gen.writeEndObject();
+    }
+
+    private static void writeString(JsonGenerator gen, SerializedString name, String value) throws IOException {
+        if (value != null) {
+            gen.writeFieldName(name);
+            gen.writeString(value);
+        }
+    }
+
+    private static void writeNumber(JsonGenerator gen, SerializedString name, Integer value) throws IOException {
+        if (value != null) {
+            gen.writeFieldName(name);
+            gen.writeNumber(value);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.quanticc.faktory;
+
+/**
+ * Instrumentation hooks called by {@link FaktoryClient}. Every method defaults to doing nothing, so a registry
+ * only implements the measurements it cares about. Durations are in nanoseconds.
+ * <p>
+ * When {@link #isEnabled()} returns {@code false} the client skips timing altogether.
+ */
+public interface FaktoryMetrics {
+
+    FaktoryMetrics NOOP = new FaktoryMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    default boolean isEnabled() {
+        return true;
+    }
+
+    default void jobFetched(String jobType) {
+    }
+
+    default void jobAcked(String jobType, long pendingNanos) {
+    }
+
+    default void jobFailed(String jobType, long pendingNanos) {
+    }
+
+    default void unknownJobType(String jobType) {
+    }
+
+    default void jobExecuted(String jobType, long executionNanos) {
+    }
+
+    default void jobTimedOut(String jobType) {
+    }
+
+    /**
+     * A job was acknowledged without running because the dedupe cache knew its key.
+     */
+    default void dedupeHit(String jobType) {
+    }
+
+    /**
+     * A job was run after the dedupe cache found no other job with its key.
+     */
+    default void dedupeMiss(String jobType) {
+    }
+
+    default void fetched(long roundTripNanos, boolean empty) {
+    }
+
+    default void heartbeat(long roundTripNanos) {
+    }
+
+    default void command(String command, long roundTripNanos) {
+    }
+
+    default void executorSaturation(int busy, int concurrency) {
+    }
+}
@@ -0,0 +1,134 @@
+package com.github.quanticc.faktory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A selector shared by many {@link FaktoryNioTransport}s and serviced by one daemon thread. Interest changes are
+ * queued and applied by that thread, so callers never touch the selector while it is selecting. Readiness is
+ * handed back to the transport, which wakes the thread waiting on it.
+ */
+class FaktoryNioEventLoop implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(FaktoryNioEventLoop.class);
+
+    private static final int LOOP_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    private static final AtomicInteger NEXT = new AtomicInteger();
+    private static volatile FaktoryNioEventLoop[] loops;
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private FaktoryNioEventLoop(int index) throws IOException {
+        this.selector = Selector.open();
+        Thread thread = new Thread(this, "faktory-nio-" + index);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Picks one of the shared loops, starting them on first use.
+     */
+    static FaktoryNioEventLoop next() throws IOException {
+        FaktoryNioEventLoop[] current = loops;
+        if (current == null) {
+            synchronized (FaktoryNioEventLoop.class) {
+                current = loops;
+                if (current == null) {
+                    current = new FaktoryNioEventLoop[LOOP_COUNT];
+                    for (int i = 0; i < current.length; i++) {
+                        current[i] = new FaktoryNioEventLoop(i + 1);
+                    }
+                    loops = current;
+                }
+            }
+        }
+        return current[Math.floorMod(NEXT.getAndIncrement(), current.length)];
+    }
+
+    /**
+     * Registers the channel with no interest. The registration runs before any later {@link #interest} call.
+     */
+    void register(SocketChannel channel, FaktoryNioTransport transport) {
+        execute(() -> {
+            try {
+                channel.register(selector, 0, transport);
+            } catch (ClosedChannelException e) {
+                transport.closed();
+            }
+        });
+    }
+
+    /**
+     * Adds {@code ops} to the interest of the channel, to be reported once through
+     * {@link FaktoryNioTransport#ready(int)}.
+     */
+    void interest(SocketChannel channel, FaktoryNioTransport transport, int ops) {
+        execute(() -> {
+            SelectionKey key = channel.keyFor(selector);
+            try {
+                if (key == null) {
+                    transport.closed();
+                } else {
+                    key.interestOps(key.interestOps() | ops);
+                }
+            } catch (CancelledKeyException e) {
+                transport.closed();
+            }
+        });
+    }
+
+    /**
+     * Lets the loop notice a closed channel, so its key is cancelled and the socket released.
+     */
+    void wakeup() {
+        selector.wakeup();
+    }
+
+    private void execute(Runnable task) {
+        tasks.offer(task);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                log.error("Selector failed, retrying", e);
+                continue;
+            }
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+            Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+            while (selected.hasNext()) {
+                SelectionKey key = selected.next();
+                selected.remove();
+                FaktoryNioTransport transport = (FaktoryNioTransport) key.attachment();
+                try {
+                    int ready = key.readyOps();
+                    key.interestOps(key.interestOps() & ~ready);
+                    transport.ready(ready);
+                } catch (CancelledKeyException e) {
+                    transport.closed();
+                } catch (RuntimeException e) {
+                    log.warn("Error while dispatching readiness", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.github.quanticc.faktory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FaktoryTransport} over a non-blocking {@link SocketChannel}. Channels are registered with a few selectors
+ * shared by every NIO connection in the JVM, so idle connections cost no selector or thread of their own. A caller
+ * that has to wait parks until the event loop reports the channel ready or the timeout passes. Writes are staged in
+ * a direct buffer so the kernel copies straight from it.
+ */
+public class FaktoryNioTransport implements FaktoryTransport {
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final SocketChannel channel;
+    private final FaktoryNioEventLoop loop;
+    private final ByteBuffer output = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private final int readTimeout;
+
+    // guarded by this, set by the event loop
+    private int readyOps;
+    private boolean closed;
+
+    public FaktoryNioTransport(URI uri, int connectTimeout, int readTimeout) throws IOException {
+        this.readTimeout = readTimeout;
+        this.loop = FaktoryNioEventLoop.next();
+        this.channel = SocketChannel.open();
+        try {
+            channel.configureBlocking(false);
+            loop.register(channel, this);
+            if (!channel.connect(new InetSocketAddress(uri.getHost(), uri.getPort()))) {
+                do {
+                    await(SelectionKey.OP_CONNECT, connectTimeout, "connect");
+                } while (!channel.finishConnect());
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        int read;
+        while ((read = channel.read(dst)) == 0 && dst.hasRemaining()) {
+            await(SelectionKey.OP_READ, readTimeout, "read");
+        }
+        return read;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (!output.hasRemaining()) {
+                flush();
+            }
+            int chunk = Math.min(length, output.remaining());
+            output.put(bytes, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ((Buffer) output).flip(); // Buffer.flip() links on Java 8
+        try {
+            while (output.hasRemaining()) {
+                if (channel.write(output) == 0) {
+                    await(SelectionKey.OP_WRITE, readTimeout, "write");
+                }
+            }
+        } finally {
+            output.compact();
+        }
+    }
+
+    /**
+     * Called by the event loop once the channel is ready for {@code ops}.
+     */
+    synchronized void ready(int ops) {
+        readyOps |= ops;
+        notifyAll();
+    }
+
+    /**
+     * Called by the event loop when the channel was closed while registering interest.
+     */
+    synchronized void closed() {
+        closed = true;
+        notifyAll();
+    }
+
+    private void await(int ops, int timeout, String operation) throws IOException {
+        synchronized (this) {
+            readyOps &= ~ops;
+        }
+        loop.interest(channel, this, ops);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        synchronized (this) {
+            while ((readyOps & ops) == 0) {
+                if (closed || !channel.isOpen()) {
+                    throw new ClosedChannelException(); // closed by another thread while waiting
+                }
+                try {
+                    if (timeout > 0) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            throw new SocketTimeoutException("Timed out after " + timeout + " ms waiting to "
+                                    + operation);
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    } else {
+                        wait();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting to " + operation);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen() && channel.isConnected();
+    }
+
+    @Override
+    public boolean isHealthy() {
+        return isOpen() && channel.socket().isConnected() && !channel.socket().isInputShutdown()
+                && !channel.socket().isOutputShutdown();
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() {
+        return channel.socket().getLocalSocketAddress();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            closed();
+            loop.wakeup();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.github.quanticc.faktory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches jobs on a background thread into a bounded local buffer, so a freed concurrency slot can be refilled
+ * without waiting for a FETCH round-trip. Jobs that stayed buffered past their reservation, their {@code reserve_for}
+ * or the client default, are discarded since Faktory has already handed them out again. A job whose FETCH returns
+ * after {@link #stop(long)} gave up waiting is handed to the {@link Returner} rather than left in the buffer.
+ */
+public class FaktoryPrefetcher implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(FaktoryPrefetcher.class);
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final FaktoryConnectionPool pool;
+    private final Source source;
+    private final long reservationNanos;
+    private final Runnable onFetched;
+    private final Returner returner;
+    private final BlockingQueue<Prefetched> buffer;
+    private final Semaphore space;
+
+    private volatile boolean running;
+    private Thread thread;
+    // guarded by this, set once stop() drained the buffer
+    private boolean stopped;
+
+    public FaktoryPrefetcher(FaktoryConnectionPool pool, Source source, int capacity, long reservationTimeoutSeconds,
+                             Runnable onFetched, Returner returner) {
+        this.pool = pool;
+        this.source = source;
+        this.reservationNanos = TimeUnit.SECONDS.toNanos(reservationTimeoutSeconds);
+        this.onFetched = onFetched;
+        this.returner = returner;
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.space = new Semaphore(capacity);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        stopped = false;
+        thread = new Thread(this, "faktory-prefetch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int size() {
+        return buffer.size();
+    }
+
+    /**
+     * Takes the next buffered job whose reservation is still valid, or returns {@code null} if none is buffered.
+     */
+    public FaktoryJob poll() {
+        Prefetched prefetched;
+        while ((prefetched = buffer.poll()) != null) {
+            space.release();
+            if (isReserved(prefetched)) {
+                return prefetched.job;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stops fetching, waiting up to {@code waitMillis} for an in-flight FETCH to return, and hands back every job
+     * still buffered and reserved so the caller can return it to Faktory. A FETCH returning later hands its job to
+     * the {@link Returner}.
+     */
+    public List<FaktoryJob> stop(long waitMillis) {
+        Thread current;
+        synchronized (this) {
+            running = false;
+            current = thread;
+            thread = null;
+        }
+        if (current != null) {
+            // never interrupt: that would close the FETCH connection and strand a reserved job
+            space.release();
+            try {
+                current.join(waitMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<FaktoryJob> remaining = new ArrayList<>();
+        synchronized (this) {
+            Prefetched prefetched;
+            while ((prefetched = buffer.poll()) != null) {
+                space.release();
+                if (isReserved(prefetched)) {
+                    remaining.add(prefetched.job);
+                }
+            }
+            stopped = true;
+        }
+        return remaining;
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                space.acquire();
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (!running) {
+                break;
+            }
+            boolean buffered = false;
+            try {
+                FaktoryJob job = source.fetch();
+                if (job != null) {
+                    buffered = offer(job);
+                    if (buffered) {
+                        onFetched.run();
+                    } else {
+                        giveBack(job);
+                    }
+                }
+            } catch (IOException | FaktoryConnectionError e) {
+                if (!running || !pool.isOpen()) {
+                    break;
+                }
+                log.warn("Prefetch failed, retrying in {} ms", RETRY_DELAY_MILLIS, e);
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+            } finally {
+                if (!buffered) {
+                    space.release();
+                }
+            }
+        }
+        log.debug("Prefetch stopped with {} jobs buffered", buffer.size());
+    }
+
+    private synchronized boolean offer(FaktoryJob job) {
+        if (stopped) {
+            return false;
+        }
+        buffer.add(new Prefetched(job, System.nanoTime()));
+        return true;
+    }
+
+    private void giveBack(FaktoryJob job) {
+        log.info("Returning job {} fetched after the prefetcher stopped", job.getJobId());
+        try {
+            returner.returnJob(job);
+        } catch (IOException | FaktoryConnectionError e) {
+            log.warn("Unable to return prefetched job {}, Faktory hands it out again once its reservation expires",
+                    job.getJobId(), e);
+        }
+    }
+
+    private boolean isReserved(Prefetched prefetched) {
+        Integer reserveFor = prefetched.job.getReserveFor();
+        long reservation = reserveFor != null ? TimeUnit.SECONDS.toNanos(reserveFor) : reservationNanos;
+        long age = System.nanoTime() - prefetched.fetchedAt;
+        if (age < reservation) {
+            return true;
+        }
+        log.warn("Discarding prefetched job {}, its reservation expired {} ms ago", prefetched.job.getJobId(),
+                TimeUnit.NANOSECONDS.toMillis(age - reservation));
+        return false;
+    }
+
+    /**
+     * Fetches the next job, or returns {@code null} if the queues are empty.
+     */
+    public interface Source {
+
+        FaktoryJob fetch() throws IOException, FaktoryConnectionError;
+    }
+
+    /**
+     * Gives a job back to Faktory, called from the prefetch thread.
+     */
+    public interface Returner {
+
+        void returnJob(FaktoryJob job) throws IOException, FaktoryConnectionError;
+    }
+
+    private static class Prefetched {
+
+        private final FaktoryJob job;
+        private final long fetchedAt;
+
+        Prefetched(FaktoryJob job, long fetchedAt) {
+            this.job = job;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.github.quanticc.faktory;
+
+/**
+ * Hooks around every job a {@link FaktoryClient} pushes, called in the order the interceptors were added to the
+ * builder, with {@link #afterPush} in reverse. Every method defaults to doing nothing. Durations are in nanoseconds.
+ * <p>
+ * Without interceptors the client skips these calls, and the clock readings they need, altogether.
+ */
+public interface FaktoryProducerInterceptor {
+
+    /**
+     * Called before the job is serialized, returning the job to push in its place, for example a copy made with
+     * {@link FaktoryJob#toBuilder()} carrying trace context in {@code custom}.
+     */
+    default FaktoryJob beforePush(FaktoryJob job) {
+        return job;
+    }
+
+    /**
+     * Called once Faktory replied to the push, or the job was appended to the spool.
+     *
+     * @param error why the job was not pushed, {@code null} on success
+     */
+    default void afterPush(FaktoryJob job, Throwable error, long pushNanos) {
+    }
+}
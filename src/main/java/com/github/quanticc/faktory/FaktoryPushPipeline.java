@@ -0,0 +1,254 @@
+package com.github.quanticc.faktory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Writes PUSH frames back-to-back on a dedicated connection while a reader thread matches the replies, in order,
+ * to the pending futures. The number of unanswered pushes is bounded by {@code maxInFlight}.
+ */
+public class FaktoryPushPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(FaktoryPushPipeline.class);
+
+    private final FaktoryConnectionPool pool;
+    private final ObjectWriter jobWriter;
+    private final Semaphore permits;
+    private final Object writeLock = new Object();
+
+    private Session session;
+    // why the last write could not open a connection, null if it could
+    private Exception openError;
+
+    public FaktoryPushPipeline(FaktoryConnectionPool pool, ObjectWriter jobWriter, int maxInFlight) {
+        this.pool = pool;
+        this.jobWriter = jobWriter;
+        this.permits = new Semaphore(Math.max(1, maxInFlight));
+    }
+
+    /**
+     * Pushes a single job, blocking only while the in-flight limit is reached.
+     */
+    public CompletableFuture<Void> push(FaktoryJob job) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        synchronized (writeLock) {
+            try {
+                Session current = write(this::pushMessage, job, result, false);
+                if (current != null) {
+                    current.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.completeExceptionally(e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Pushes all jobs in as few writes as the in-flight limit allows. The returned futures are in job order.
+     */
+    public CompletableFuture<?>[] pushAll(Collection<FaktoryJob> jobs) {
+        return pushAll(jobs, this::pushMessage);
+    }
+
+    /**
+     * Pushes jobs already serialized to JSON, as {@link #pushAll(Collection)} does.
+     */
+    public CompletableFuture<?>[] pushAllSerialized(Collection<String> jobs) {
+        return pushAll(jobs, job -> "PUSH " + job);
+    }
+
+    private <T> CompletableFuture<?>[] pushAll(Collection<T> jobs, Frame<T> frame) {
+        CompletableFuture<?>[] results = new CompletableFuture<?>[jobs.size()];
+        int i = 0;
+        synchronized (writeLock) {
+            openError = null;
+            try {
+                for (T job : jobs) {
+                    CompletableFuture<Void> result = new CompletableFuture<>();
+                    results[i++] = result;
+                    if (openError != null) {
+                        // keep the order: no job is pushed after one that could not be
+                        result.completeExceptionally(openError);
+                        continue;
+                    }
+                    write(frame, job, result, true);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (; i < results.length; i++) {
+                    CompletableFuture<Void> result = new CompletableFuture<>();
+                    result.completeExceptionally(e);
+                    results[i] = result;
+                }
+            } finally {
+                if (session != null) {
+                    session.flush();
+                }
+            }
+        }
+        return results;
+    }
+
+    public void close() {
+        synchronized (writeLock) {
+            if (session != null) {
+                session.fail(new IOException("Push pipeline closed"));
+                session = null;
+            }
+        }
+    }
+
+    /**
+     * Serializes and buffers one PUSH frame. Returns the session the frame was written to, or {@code null} if
+     * the job was failed before reaching the connection. With {@code flushBeforeWaiting}, frames buffered so far are
+     * flushed before waiting for a permit, since their replies are what frees one.
+     */
+    private <T> Session write(Frame<T> frame, T job, CompletableFuture<Void> result, boolean flushBeforeWaiting)
+            throws InterruptedException {
+        openError = null;
+        String message;
+        try {
+            message = frame.message(job);
+        } catch (JsonProcessingException e) {
+            result.completeExceptionally(e);
+            return null;
+        }
+        if (!permits.tryAcquire()) {
+            if (flushBeforeWaiting && session != null) {
+                session.flush();
+            }
+            permits.acquire();
+        }
+        result.whenComplete((ignored, error) -> permits.release());
+        Session current;
+        try {
+            current = currentSession();
+        } catch (IOException | FaktoryConnectionError e) {
+            openError = e;
+            result.completeExceptionally(e);
+            return null;
+        }
+        current.write(message, result);
+        return current;
+    }
+
+    private String pushMessage(FaktoryJob job) throws JsonProcessingException {
+        return "PUSH " + jobWriter.writeValueAsString(job);
+    }
+
+    private Session currentSession() throws IOException, FaktoryConnectionError {
+        if (session == null || session.failed) {
+            session = new Session(pool.open());
+            session.start();
+        }
+        return session;
+    }
+
+    private interface Frame<T> {
+
+        String message(T job) throws JsonProcessingException;
+    }
+
+    private static class Session implements Runnable {
+
+        private final FaktoryConnection connection;
+        private final Queue<CompletableFuture<Void>> inFlight = new ConcurrentLinkedQueue<>();
+        private volatile boolean failed;
+
+        Session(FaktoryConnection connection) {
+            this.connection = connection;
+        }
+
+        void start() {
+            Thread reader = new Thread(this, "faktory-push-reader");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        void write(String message, CompletableFuture<Void> result) {
+            inFlight.add(result);
+            if (failed) {
+                drain(new IOException("Push connection failed"));
+                return;
+            }
+            try {
+                connection.write(message);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        void flush() {
+            if (failed) {
+                return;
+            }
+            try {
+                connection.flush();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (!failed) {
+                try {
+                    connection.receive();
+                    complete(null);
+                } catch (FaktoryConnectionError e) {
+                    complete(e);
+                } catch (SocketTimeoutException e) {
+                    if (!inFlight.isEmpty()) { // an idle pipeline has nothing to wait for
+                        log.warn("Push pipeline timed out, {} pushes in flight", inFlight.size(), e);
+                        fail(e);
+                    }
+                } catch (IOException e) {
+                    if (!failed) {
+                        log.warn("Push pipeline connection failed, {} pushes in flight", inFlight.size(), e);
+                    }
+                    fail(e);
+                }
+            }
+        }
+
+        private void complete(FaktoryConnectionError error) {
+            CompletableFuture<Void> result = inFlight.poll();
+            if (result == null) {
+                log.warn("Received a reply without a matching push: {}", error != null ? error.getMessage() : "+OK");
+            } else if (error == null) {
+                result.complete(null);
+            } else {
+                result.completeExceptionally(new FaktoryJobRejectedError(error.getMessage()));
+            }
+        }
+
+        void fail(Throwable error) {
+            failed = true;
+            try {
+                connection.close();
+            } catch (IOException e) {
+                log.debug("Unable to close push connection", e);
+            }
+            drain(error);
+        }
+
+        private void drain(Throwable error) {
+            CompletableFuture<Void> result;
+            while ((result = inFlight.poll()) != null) {
+                result.completeExceptionally(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.github.quanticc.faktory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming RESP reader working over a reusable buffer. CRLF is located in place and bulk strings are read
+ * straight into the buffer, so the bytes of the current reply can be handed to Jackson without building a String.
+ * <p>
+ * The reply exposed by {@link #array()}, {@link #offset()} and {@link #length()} is only valid until the next
+ * call to {@link #read()}. Simple strings and errors include their leading type byte, bulk strings do not.
+ */
+public class FaktoryReplyReader {
+
+    public static final int SIMPLE = '+';
+    public static final int ERROR = '-';
+    public static final int BULK = '$';
+    public static final int NIL = 0;
+
+    private static final int DEFAULT_CAPACITY = 4096;
+    private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+
+    private final ReadableByteChannel channel;
+
+    private ByteBuffer buffer;
+    private int start;
+    private int scanned;
+    private int replyOffset;
+    private int replyLength;
+
+    public FaktoryReplyReader(ReadableByteChannel channel) {
+        this(channel, DEFAULT_CAPACITY);
+    }
+
+    public FaktoryReplyReader(ReadableByteChannel channel, int initialCapacity) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(Math.max(16, initialCapacity));
+    }
+
+    public int read() throws IOException {
+        shrinkIfOversized();
+        while (true) {
+            int lineEnd = findLineEnd();
+            byte[] array = buffer.array();
+            int lineStart = start;
+            if (lineEnd == lineStart) {
+                consume(lineEnd + 2);
+                continue;
+            }
+            int type = array[lineStart];
+            switch (type) {
+                case SIMPLE:
+                case ERROR:
+                    setReply(lineStart, trimmedEnd(array, lineStart, lineEnd) - lineStart);
+                    consume(lineEnd + 2);
+                    return type;
+                case BULK:
+                    int size = parseLength(array, lineStart + 1, lineEnd);
+                    if (size < 0) {
+                        setReply(lineStart, 0);
+                        consume(lineEnd + 2);
+                        return NIL;
+                    }
+                    consume(lineEnd + 2);
+                    ensureAvailable(size + 2);
+                    if (array()[start + size] != '\r' || array()[start + size + 1] != '\n') {
+                        throw new IOException("Bulk string of " + size + " bytes not terminated by CRLF");
+                    }
+                    setReply(start, size);
+                    consume(start + size + 2);
+                    return BULK;
+                default:
+                    throw new IOException("Unexpected reply type: " + (char) type);
+            }
+        }
+    }
+
+    public byte[] array() {
+        return buffer.array();
+    }
+
+    public int offset() {
+        return replyOffset;
+    }
+
+    public int length() {
+        return replyLength;
+    }
+
+    public String text() {
+        return new String(buffer.array(), replyOffset, replyLength, StandardCharsets.UTF_8);
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    private void setReply(int offset, int length) {
+        this.replyOffset = offset;
+        this.replyLength = length;
+    }
+
+    private void consume(int newStart) {
+        start = newStart;
+        scanned = newStart;
+    }
+
+    private int findLineEnd() throws IOException {
+        while (true) {
+            byte[] array = buffer.array();
+            int end = buffer.position();
+            for (int i = Math.max(start, scanned); i < end - 1; i++) {
+                if (array[i] == '\r' && array[i + 1] == '\n') {
+                    return i;
+                }
+            }
+            scanned = Math.max(start, end - 1);
+            fill(end - start + 1);
+        }
+    }
+
+    private void ensureAvailable(int required) throws IOException {
+        while (buffer.position() - start < required) {
+            fill(required);
+        }
+    }
+
+    /**
+     * Reads more bytes from the channel, making room for at least {@code required} unread bytes first.
+     */
+    private void fill(int required) throws IOException {
+        if (buffer.capacity() - start < required) {
+            int unread = buffer.position() - start;
+            if (buffer.capacity() < required) {
+                ByteBuffer larger = ByteBuffer.allocate(Integer.highestOneBit(required - 1) << 1);
+                larger.put(buffer.array(), start, unread);
+                buffer = larger;
+            } else {
+                System.arraycopy(buffer.array(), start, buffer.array(), 0, unread);
+                ((Buffer) buffer).position(unread); // Buffer.position(int) links on Java 8
+            }
+            scanned -= start;
+            start = 0;
+        }
+        int read = channel.read(buffer);
+        if (read < 0) {
+            throw new EOFException("Connection closed by server");
+        }
+    }
+
+    private void shrinkIfOversized() {
+        int unread = buffer.position() - start;
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY && unread <= DEFAULT_CAPACITY) {
+            ByteBuffer smaller = ByteBuffer.allocate(DEFAULT_CAPACITY);
+            smaller.put(buffer.array(), start, unread);
+            buffer = smaller;
+            scanned -= start;
+            start = 0;
+        }
+    }
+
+    private static int trimmedEnd(byte[] array, int from, int to) {
+        while (to > from && array[to - 1] == ' ') {
+            to--;
+        }
+        return to;
+    }
+
+    private static int parseLength(byte[] array, int from, int to) throws IOException {
+        boolean negative = from < to && array[from] == '-';
+        int i = negative ? from + 1 : from;
+        if (i >= to) {
+            throw new IOException("Invalid bulk string length");
+        }
+        int value = 0;
+        for (; i < to; i++) {
+            int digit = array[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IOException("Invalid bulk string length");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+}
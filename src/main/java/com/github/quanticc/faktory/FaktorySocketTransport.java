@@ -0,0 +1,84 @@
+package com.github.quanticc.faktory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link FaktoryTransport} over a blocking {@link Socket}, with the read timeout applied through
+ * {@link Socket#setSoTimeout(int)}.
+ */
+public class FaktorySocketTransport implements FaktoryTransport {
+
+    private final Socket socket;
+    private final InputStream input;
+    private final OutputStream output;
+
+    public FaktorySocketTransport(URI uri, int connectTimeout, int readTimeout) throws IOException {
+        socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(uri.getHost(), uri.getPort()), connectTimeout);
+            socket.setSoTimeout(readTimeout);
+            input = socket.getInputStream();
+            output = new BufferedOutputStream(socket.getOutputStream());
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        int read;
+        if (dst.hasArray()) {
+            read = input.read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+            if (read > 0) {
+                ((Buffer) dst).position(dst.position() + read); // Buffer.position(int) links on Java 8
+            }
+        } else {
+            byte[] chunk = new byte[Math.min(dst.remaining(), 8192)];
+            read = input.read(chunk);
+            if (read > 0) {
+                dst.put(chunk, 0, read);
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        output.write(bytes, offset, length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        output.flush();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return socket.isConnected() && !socket.isClosed();
+    }
+
+    @Override
+    public boolean isHealthy() {
+        return isOpen() && !socket.isInputShutdown() && !socket.isOutputShutdown();
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() {
+        return socket.getLocalSocketAddress();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
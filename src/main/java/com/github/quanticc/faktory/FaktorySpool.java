@@ -0,0 +1,464 @@
+package com.github.quanticc.faktory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of submitted jobs, so {@link FaktoryClient#submit(FaktoryJob)} returns as soon as a job is
+ * appended to a memory-mapped file, whether or not Faktory is reachable. A drainer thread pushes the spooled jobs
+ * in order through a {@link Sink} and marks them acknowledged once Faktory replied, deleting segment files that
+ * were fully pushed.
+ * <p>
+ * Each segment file starts with a 16 byte header: a magic number, a version, and the offset of the first job not
+ * yet acknowledged. Jobs follow as records of their length, the CRC32 of their JSON and the JSON itself. On open,
+ * records are read up to the first one that is incomplete or fails its checksum, which is where a crash cut the
+ * last append short. Jobs pushed but not yet acknowledged at the time of a crash are pushed again.
+ */
+public class FaktorySpool implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(FaktorySpool.class);
+    private static final int MAGIC = 0x464b5350;
+    private static final int VERSION = 1;
+    private static final int ACKED_OFFSET = 8;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final String SUFFIX = ".spool";
+    private static final long RETRY_DELAY_MILLIS = 1000;
+    private static final long CLOSE_WAIT_MILLIS = 5000;
+    private static final Unmapper UNMAPPER = findUnmapper();
+
+    private final FaktorySpoolOptions options;
+    private final Sink sink;
+    // oldest first, the last one is the segment being appended to
+    private final Deque<Segment> segments = new ArrayDeque<>();
+
+    private volatile boolean running;
+    private boolean closed;
+    private Thread drainer;
+
+    private FaktorySpool(FaktorySpoolOptions options, Sink sink) {
+        this.options = options;
+        this.sink = sink;
+    }
+
+    /**
+     * Opens the spool in the options directory, recovering the jobs left by a previous run. The drainer is not
+     * started until {@link #start()}.
+     */
+    public static FaktorySpool open(FaktorySpoolOptions options, Sink sink) throws IOException {
+        if (options.getSegmentSize() <= HEADER_SIZE + RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size is too small: " + options.getSegmentSize());
+        }
+        FaktorySpool spool = new FaktorySpool(options, sink);
+        spool.recover();
+        return spool;
+    }
+
+    public synchronized void start() {
+        if (running || closed) {
+            return;
+        }
+        running = true;
+        drainer = new Thread(this::drain, "faktory-spool-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Appends a serialized job. Fails only if the spool is closed, the job does not fit a segment or
+     * {@code maxSegments} are full.
+     */
+    public void append(byte[] job) throws IOException {
+        int size = RECORD_HEADER_SIZE + job.length;
+        if (size > options.getSegmentSize() - HEADER_SIZE) {
+            throw new IOException("Job of " + job.length + " bytes does not fit in a spool segment");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(job, 0, job.length);
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("Spool is closed");
+            }
+            Segment segment = segments.getLast();
+            if (segment.writeOffset + size > segment.buffer.capacity()) {
+                if (segments.size() >= options.getMaxSegments()) {
+                    throw new IOException("Spool is full with " + segments.size() + " segments");
+                }
+                segment = createSegment(segment.sequence + 1);
+                segments.addLast(segment);
+            }
+            int offset = segment.writeOffset;
+            ByteBuffer target = segment.buffer.duplicate();
+            ((Buffer) target).position(offset + RECORD_HEADER_SIZE); // Buffer.position(int) links on Java 8
+            target.put(job);
+            segment.buffer.putInt(offset + 4, (int) crc.getValue());
+            // the length goes last, a record without it reads as the end of the segment
+            segment.buffer.putInt(offset, job.length);
+            segment.writeOffset = offset + size;
+            if (options.isSync()) {
+                segment.buffer.force();
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Number of jobs appended and not yet acknowledged by Faktory.
+     */
+    public synchronized int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            for (int offset = segment.ackedOffset; offset < segment.writeOffset; size++) {
+                offset += RECORD_HEADER_SIZE + segment.buffer.getInt(offset);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Stops the drainer, waiting for the batch being pushed, and rejects further appends. Jobs not yet pushed stay
+     * on disk for the next time the spool is opened.
+     */
+    @Override
+    public void close() {
+        Thread current;
+        synchronized (this) {
+            closed = true;
+            running = false;
+            current = drainer;
+            drainer = null;
+            notifyAll();
+        }
+        if (current != null) {
+            try {
+                current.join(CLOSE_WAIT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void drain() {
+        while (running) {
+            List<Record> batch;
+            try {
+                batch = awaitBatch();
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (batch == null) {
+                break;
+            }
+            List<String> jobs = new ArrayList<>(batch.size());
+            for (Record record : batch) {
+                jobs.add(record.read());
+            }
+            CompletableFuture<?>[] results = sink.push(jobs);
+            int done = 0;
+            Throwable error = null;
+            for (CompletableFuture<?> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    if (!(e.getCause() instanceof FaktoryJobRejectedError)) {
+                        error = e.getCause();
+                        break;
+                    }
+                    // retrying a job Faktory refused would block every job behind it
+                    log.warn("Faktory rejected a spooled job, dropping it: {}", jobs.get(done), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    error = e;
+                    break;
+                }
+                done++;
+            }
+            if (done > 0) {
+                acknowledge(batch.get(done - 1));
+            }
+            if (error != null) {
+                log.warn("Unable to push spooled jobs, retrying in {} ms", RETRY_DELAY_MILLIS, error);
+                try {
+                    pause();
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+        log.debug("Spool drainer stopped");
+    }
+
+    private synchronized List<Record> awaitBatch() throws InterruptedException {
+        while (running) {
+            List<Record> batch = new ArrayList<>();
+            for (Segment segment : segments) {
+                int offset = segment.ackedOffset;
+                while (offset < segment.writeOffset && batch.size() < options.getDrainBatchSize()) {
+                    int length = segment.buffer.getInt(offset);
+                    offset += RECORD_HEADER_SIZE + length;
+                    batch.add(new Record(segment, offset, length));
+                }
+            }
+            if (!batch.isEmpty()) {
+                return batch;
+            }
+            wait();
+        }
+        return null;
+    }
+
+    private synchronized void pause() throws InterruptedException {
+        if (running) {
+            wait(RETRY_DELAY_MILLIS);
+        }
+    }
+
+    /**
+     * Marks every job up to and including the given one as acknowledged, deleting the segments that are done.
+     */
+    private synchronized void acknowledge(Record last) {
+        while (segments.getFirst() != last.segment) {
+            delete(segments.removeFirst());
+        }
+        last.segment.ackedOffset = last.end;
+        last.segment.buffer.putInt(ACKED_OFFSET, last.end);
+        if (last.end == last.segment.writeOffset && segments.size() > 1) {
+            delete(segments.removeFirst());
+        }
+    }
+
+    private void delete(Segment segment) {
+        delete(segment.path, segment.buffer);
+    }
+
+    /**
+     * Deletes a segment file and unmaps it, so a long outage does not keep the address space of every drained
+     * segment until the buffers are collected. The buffer must not be read afterwards.
+     */
+    private void delete(Path path, MappedByteBuffer buffer) {
+        unmap(buffer);
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Unable to delete spool segment {}", path, e);
+        }
+    }
+
+    private void recover() throws IOException {
+        Path directory = options.getDirectory();
+        Files.createDirectories(directory);
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path path : stream) {
+                paths.add(path);
+            }
+        }
+        paths.sort(null);
+        for (Path path : paths) {
+            Segment segment = loadSegment(path);
+            if (segment != null) {
+                segments.addLast(segment);
+            }
+        }
+        // sealed segments that were fully pushed before the crash; the last one is kept to append to
+        while (segments.size() > 1 && segments.getFirst().ackedOffset == segments.getFirst().writeOffset) {
+            delete(segments.removeFirst());
+        }
+        if (segments.isEmpty()) {
+            segments.addLast(createSegment(0));
+        } else {
+            Segment last = segments.getLast();
+            // clear what a torn append left behind so it can't be mistaken for a record later, without touching
+            // the pages never written to
+            int offset = last.writeOffset;
+            for (; offset + 8 <= last.buffer.capacity(); offset += 8) {
+                if (last.buffer.getLong(offset) != 0) {
+                    last.buffer.putLong(offset, 0);
+                }
+            }
+            for (; offset < last.buffer.capacity(); offset++) {
+                last.buffer.put(offset, (byte) 0);
+            }
+        }
+        int pending = size();
+        if (pending > 0) {
+            log.info("Recovered {} spooled jobs from {}", pending, directory);
+        }
+    }
+
+    private Segment loadSegment(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        long sequence;
+        try {
+            sequence = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring unexpected file in spool directory: {}", path);
+            return null;
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Spool segment is too large: " + path);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) == 0) {
+            // created right before a crash, nothing was appended yet
+            delete(path, buffer);
+            return null;
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a spool segment: " + path);
+        }
+        int offset = HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        byte[] job = new byte[0];
+        while (offset + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || length > buffer.capacity() - offset - RECORD_HEADER_SIZE) {
+                break;
+            }
+            if (job.length < length) {
+                job = new byte[length];
+            }
+            ByteBuffer source = buffer.duplicate();
+            ((Buffer) source).position(offset + RECORD_HEADER_SIZE);
+            source.get(job, 0, length);
+            crc.reset();
+            crc.update(job, 0, length);
+            if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                log.warn("Spool segment {} ends with a torn record at offset {}", path, offset);
+                break;
+            }
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        int acked = Math.min(Math.max(buffer.getInt(ACKED_OFFSET), HEADER_SIZE), offset);
+        return new Segment(sequence, path, buffer, acked, offset);
+    }
+
+    private Segment createSegment(long sequence) throws IOException {
+        Path path = options.getDirectory().resolve(String.format("%020d%s", sequence, SUFFIX));
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, options.getSegmentSize());
+        }
+        buffer.putInt(4, VERSION);
+        buffer.putInt(ACKED_OFFSET, HEADER_SIZE);
+        buffer.putInt(0, MAGIC);
+        return new Segment(sequence, path, buffer, HEADER_SIZE, HEADER_SIZE);
+    }
+
+    private static void unmap(MappedByteBuffer buffer) {
+        if (UNMAPPER != null) {
+            try {
+                UNMAPPER.unmap(buffer);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                log.debug("Unable to unmap spool segment, leaving it to the garbage collector", e);
+            }
+        }
+    }
+
+    /**
+     * Finds how this JVM releases a mapping: {@code Unsafe.invokeCleaner} from Java 9, the buffer's cleaner on
+     * Java 8. Returns {@code null} if neither is accessible.
+     */
+    private static Unmapper findUnmapper() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            return buffer -> invokeCleaner.invoke(unsafe, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Java 8
+        }
+        try {
+            Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> clean.invoke(cleaner.invoke(buffer));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("Unmapping spool segments is not supported on this JVM", e);
+            return null;
+        }
+    }
+
+    private interface Unmapper {
+
+        void unmap(MappedByteBuffer buffer) throws ReflectiveOperationException;
+    }
+
+    /**
+     * Pushes serialized jobs in order, returning one future per job that completes once Faktory replied. A job
+     * whose future fails with {@link FaktoryJobRejectedError} is dropped, any other failure is retried.
+     */
+    public interface Sink {
+
+        CompletableFuture<?>[] push(Collection<String> jobs);
+    }
+
+    private static class Segment {
+
+        private final long sequence;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int ackedOffset;
+        private int writeOffset;
+
+        Segment(long sequence, Path path, MappedByteBuffer buffer, int ackedOffset, int writeOffset) {
+            this.sequence = sequence;
+            this.path = path;
+            this.buffer = buffer;
+            this.ackedOffset = ackedOffset;
+            this.writeOffset = writeOffset;
+        }
+    }
+
+    private static class Record {
+
+        private final Segment segment;
+        private final int end;
+        private final int length;
+
+        Record(Segment segment, int end, int length) {
+            this.segment = segment;
+            this.end = end;
+            this.length = length;
+        }
+
+        /**
+         * Copies the job out of the segment. Written records never change, so this needs no lock.
+         */
+        String read() {
+            byte[] job = new byte[length];
+            ByteBuffer source = segment.buffer.duplicate();
+            ((Buffer) source).position(end - length);
+            source.get(job);
+            return new String(job, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.quanticc.faktory;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Where and how a {@link FaktorySpool} keeps jobs submitted while they wait to be pushed to Faktory.
+ */
+public class FaktorySpoolOptions {
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final int drainBatchSize;
+    private final boolean sync;
+
+    private FaktorySpoolOptions(Builder builder) {
+        this.directory = Objects.requireNonNull(builder.directory);
+        this.segmentSize = builder.segmentSize;
+        this.maxSegments = Math.max(1, builder.maxSegments);
+        this.drainBatchSize = Math.max(1, builder.drainBatchSize);
+        this.sync = builder.sync;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    public int getMaxSegments() {
+        return maxSegments;
+    }
+
+    public int getDrainBatchSize() {
+        return drainBatchSize;
+    }
+
+    public boolean isSync() {
+        return sync;
+    }
+
+    @Override
+    public String toString() {
+        return "FaktorySpoolOptions{" +
+                "directory=" + directory +
+                ", segmentSize=" + segmentSize +
+                ", maxSegments=" + maxSegments +
+                ", drainBatchSize=" + drainBatchSize +
+                ", sync=" + sync +
+                '}';
+    }
+
+    public static class Builder {
+
+        private Path directory;
+        private int segmentSize = 16 * 1024 * 1024;
+        private int maxSegments = 64;
+        private int drainBatchSize = 500;
+        private boolean sync;
+
+        /**
+         * Directory holding the segment files, created if missing. It must not be shared with another spool.
+         */
+        public Builder withDirectory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * Bytes per memory-mapped segment file, 16 MiB by default. A single job must fit in one segment.
+         */
+        public Builder withSegmentSize(int segmentSize) {
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * Segments kept before submits are rejected because Faktory has been unreachable for too long.
+         */
+        public Builder withMaxSegments(int maxSegments) {
+            this.maxSegments = maxSegments;
+            return this;
+        }
+
+        /**
+         * Jobs pipelined to Faktory before waiting for their replies and truncating the spool.
+         */
+        public Builder withDrainBatchSize(int drainBatchSize) {
+            this.drainBatchSize = drainBatchSize;
+            return this;
+        }
+
+        /**
+         * Forces every append to disk before returning. Without it a job survives a crash of the JVM but not of
+         * the operating system, in exchange for appends that take microseconds.
+         */
+        public Builder withSync(boolean sync) {
+            this.sync = sync;
+            return this;
+        }
+
+        public FaktorySpoolOptions build() {
+            return new FaktorySpoolOptions(this);
+        }
+    }
+}
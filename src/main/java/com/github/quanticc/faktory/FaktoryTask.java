@@ -1,16 +1,43 @@
 package com.github.quanticc.faktory;
 
-import java.util.function.BiConsumer;
+import java.util.Objects;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class FaktoryTask {
 
     private final String jobType;
     private final Consumer<FaktoryJob> action;
+    private final FaktoryTaskOptions options;
+    private final Function<FaktoryJob, ? extends CompletionStage<?>> asyncAction;
 
     public FaktoryTask(String jobType, Consumer<FaktoryJob> action) {
+        this(jobType, FaktoryTaskOptions.DEFAULT, action);
+    }
+
+    public FaktoryTask(String jobType, FaktoryTaskOptions options, Consumer<FaktoryJob> action) {
         this.jobType = jobType;
         this.action = action;
+        this.options = Objects.requireNonNull(options);
+        this.asyncAction = null;
+    }
+
+    private FaktoryTask(String jobType, FaktoryTaskOptions options,
+                        Function<FaktoryJob, ? extends CompletionStage<?>> asyncAction) {
+        this.jobType = jobType;
+        this.action = job -> asyncAction.apply(job).toCompletableFuture().join();
+        this.options = Objects.requireNonNull(options);
+        this.asyncAction = asyncAction;
+    }
+
+    /**
+     * A task whose job is done when the returned stage completes. It holds a concurrency slot until then, but no
+     * thread: the action only runs on the executor to start the work.
+     */
+    public static FaktoryTask async(String jobType, FaktoryTaskOptions options,
+                                    Function<FaktoryJob, ? extends CompletionStage<?>> action) {
+        return new FaktoryTask(jobType, options, Objects.requireNonNull(action));
     }
 
     public String getJobType() {
@@ -21,10 +48,27 @@ public class FaktoryTask {
         return action;
     }
 
+    /**
+     * The action of an {@link #async} task, {@code null} otherwise. {@link #getAction()} of an async task waits for
+     * the stage to complete.
+     */
+    public Function<FaktoryJob, ? extends CompletionStage<?>> getAsyncAction() {
+        return asyncAction;
+    }
+
+    public boolean isAsync() {
+        return asyncAction != null;
+    }
+
+    public FaktoryTaskOptions getOptions() {
+        return options;
+    }
+
     @Override
     public String toString() {
         return "FaktoryTask{" +
                 "jobType='" + jobType + '\'' +
+                ", options=" + options +
                 '}';
     }
 }
@@ -0,0 +1,98 @@
+package com.github.quanticc.faktory;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Limits applied to a single registered task, so one slow job type cannot take over the whole worker.
+ */
+public class FaktoryTaskOptions {
+
+    public static final FaktoryTaskOptions DEFAULT = builder().build();
+
+    private final int maxConcurrency;
+    private final ExecutorService executor;
+    private final long timeoutMillis;
+
+    private FaktoryTaskOptions(Builder builder) {
+        this.maxConcurrency = builder.maxConcurrency;
+        this.executor = builder.executor;
+        this.timeoutMillis = builder.timeoutMillis;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Maximum number of jobs of this task running at once, 0 for no limit other than the client concurrency.
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Executor dedicated to this task, or {@code null} to use the client executor.
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Milliseconds a job may run before it is cancelled and failed, 0 for no timeout.
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "FaktoryTaskOptions{" +
+                "maxConcurrency=" + maxConcurrency +
+                ", executor=" + executor +
+                ", timeoutMillis=" + timeoutMillis +
+                '}';
+    }
+
+    public static class Builder {
+
+        private int maxConcurrency;
+        private ExecutorService executor;
+        private long timeoutMillis;
+
+        /**
+         * Jobs fetched while the limit is reached wait locally, without holding a client concurrency slot, until
+         * a running job of the same task finishes.
+         */
+        public Builder withMaxConcurrency(int maxConcurrency) {
+            if (maxConcurrency < 0) {
+                throw new IllegalArgumentException("Max concurrency must not be negative: " + maxConcurrency);
+            }
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * Runs this task on its own executor. It is not shut down by the client.
+         */
+        public Builder withExecutor(ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Interrupts a job that runs longer than this and reports it to Faktory as failed with a
+         * {@link java.util.concurrent.TimeoutException}. A job that ignores the interrupt keeps its thread busy.
+         */
+        public Builder withTimeout(long timeoutMillis) {
+            if (timeoutMillis < 0) {
+                throw new IllegalArgumentException("Timeout must not be negative: " + timeoutMillis);
+            }
+            this.timeoutMillis = timeoutMillis;
+            return this;
+        }
+
+        public FaktoryTaskOptions build() {
+            return new FaktoryTaskOptions(this);
+        }
+    }
+}
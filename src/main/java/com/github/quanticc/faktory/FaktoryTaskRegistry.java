@@ -0,0 +1,70 @@
+package com.github.quanticc.faktory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Copy-on-write table from job type to handlers. Lookups are lock-free and allocation-free, and handlers can be
+ * registered or removed while workers are running.
+ */
+public class FaktoryTaskRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(FaktoryTaskRegistry.class);
+    private static final FaktoryTask[] NONE = new FaktoryTask[0];
+
+    private final LongAdder unknownJobTypes = new LongAdder();
+
+    private volatile Map<String, FaktoryTask[]> tasks = Collections.emptyMap();
+
+    public synchronized void register(FaktoryTask task) {
+        Map<String, FaktoryTask[]> copy = new HashMap<>(tasks);
+        FaktoryTask[] current = copy.getOrDefault(task.getJobType(), NONE);
+        FaktoryTask[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = task;
+        copy.put(task.getJobType(), updated);
+        tasks = copy;
+        log.debug("Registered task: {}", task);
+    }
+
+    public synchronized void deregister(String jobType) {
+        if (!tasks.containsKey(jobType)) {
+            return;
+        }
+        Map<String, FaktoryTask[]> copy = new HashMap<>(tasks);
+        for (FaktoryTask task : copy.remove(jobType)) {
+            log.debug("Unregistered task: {}", task);
+        }
+        tasks = copy;
+    }
+
+    public Set<String> getJobTypes() {
+        return Collections.unmodifiableSet(tasks.keySet());
+    }
+
+    /**
+     * Number of fetched jobs that had no handler registered for their type.
+     */
+    public long getUnknownJobTypeCount() {
+        return unknownJobTypes.sum();
+    }
+
+    /**
+     * Returns the handlers for the job type. The returned array is shared and must not be modified.
+     */
+    FaktoryTask[] lookup(String jobType) {
+        FaktoryTask[] found = tasks.get(jobType);
+        return found != null ? found : NONE;
+    }
+
+    void recordUnknownJobType(String jobType) {
+        unknownJobTypes.increment();
+        log.warn("No task registered for job type {}", jobType);
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.quanticc.faktory;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Byte stream to a Faktory server used by {@link FaktoryConnection}. Reads return as soon as any bytes are
+ * available and throw {@link java.net.SocketTimeoutException} when none arrive within the read timeout; writes
+ * are buffered until {@link #flush()}.
+ */
+public interface FaktoryTransport extends ReadableByteChannel {
+
+    /**
+     * Blocking {@link java.net.Socket} streams.
+     */
+    Factory BLOCKING = FaktorySocketTransport::new;
+
+    /**
+     * Non-blocking {@link java.nio.channels.SocketChannel} registered with selectors shared across connections,
+     * writing through a direct buffer.
+     */
+    Factory NIO = FaktoryNioTransport::new;
+
+    void write(byte[] bytes, int offset, int length) throws IOException;
+
+    void flush() throws IOException;
+
+    /**
+     * Whether both directions of the stream are still usable.
+     */
+    boolean isHealthy();
+
+    SocketAddress getLocalAddress();
+
+    interface Factory {
+
+        /**
+         * Connects to the server, timeouts are in milliseconds and 0 waits forever.
+         */
+        FaktoryTransport connect(URI uri, int connectTimeout, int readTimeout) throws IOException;
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.quanticc.faktory;
+
+import java.util.Objects;
+
+/**
+ * How {@link FaktoryConnection}s reach the server: the {@link FaktoryTransport} and its timeouts.
+ */
+public class FaktoryTransportOptions {
+
+    public static final FaktoryTransportOptions DEFAULT = builder().build();
+
+    private final FaktoryTransport.Factory transport;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final long idleTimeoutMillis;
+
+    private FaktoryTransportOptions(Builder builder) {
+        this.transport = Objects.requireNonNull(builder.transport);
+        this.connectTimeoutMillis = builder.connectTimeoutMillis;
+        this.readTimeoutMillis = builder.readTimeoutMillis;
+        this.idleTimeoutMillis = builder.idleTimeoutMillis;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public FaktoryTransport.Factory getTransport() {
+        return transport;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public int getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "FaktoryTransportOptions{" +
+                "connectTimeoutMillis=" + connectTimeoutMillis +
+                ", readTimeoutMillis=" + readTimeoutMillis +
+                ", idleTimeoutMillis=" + idleTimeoutMillis +
+                '}';
+    }
+
+    public static class Builder {
+
+        private FaktoryTransport.Factory transport = FaktoryTransport.BLOCKING;
+        private int connectTimeoutMillis = 10_000;
+        private int readTimeoutMillis = 60_000;
+        private long idleTimeoutMillis;
+
+        /**
+         * {@link FaktoryTransport#BLOCKING} by default, or {@link FaktoryTransport#NIO}.
+         */
+        public Builder withTransport(FaktoryTransport.Factory transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * Milliseconds to wait for a connection, 0 to wait forever.
+         */
+        public Builder withConnectTimeout(int connectTimeoutMillis) {
+            this.connectTimeoutMillis = connectTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * Milliseconds to wait for a reply before the connection is dropped, 0 to wait forever. Must exceed the
+         * two seconds an empty {@code FETCH} blocks on the server.
+         */
+        public Builder withReadTimeout(int readTimeoutMillis) {
+            this.readTimeoutMillis = readTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * Milliseconds a connection may stay unused before it is reopened on its next use, 0 to keep it forever.
+         */
+        public Builder withIdleTimeout(long idleTimeoutMillis) {
+            this.idleTimeoutMillis = idleTimeoutMillis;
+            return this;
+        }
+
+        public FaktoryTransportOptions build() {
+            return new FaktoryTransportOptions(this);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.github.quanticc.faktory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Runs several {@link FaktoryClient} shards in one JVM, each with its own worker id and connections so fetching
+ * scales with cores, while sharing one executor, one handler registry and the metrics of the client builder.
+ * Shard {@code i} uses the worker id of the builder suffixed with {@code -i}.
+ * <p>
+ * Every shard applies the {@code maxConcurrency} of a task on its own, so a group runs up to that many jobs of the
+ * task per shard. Executor saturation is reported to the metrics for the whole group.
+ * <p>
+ * The shards never install their own shutdown hook; the group installs a single one that disconnects all of them,
+ * unless the client builder disables it. A spool configured on the client builder is used by the first shard only.
+ */
+public class FaktoryWorkerGroup {
+
+    private static final Logger log = LoggerFactory.getLogger(FaktoryWorkerGroup.class);
+
+    private final List<FaktoryClient> shards;
+    private final FaktoryTaskRegistry registry;
+    private final ExecutorService executor;
+    private final boolean shutdownExecutor;
+
+    public FaktoryWorkerGroup(Builder builder) throws URISyntaxException {
+        FaktoryClient.Builder client = Objects.requireNonNull(builder.client);
+        int shardCount = Math.max(1, builder.shards);
+        String workerId = Objects.requireNonNull(client.getWorkerId());
+        FaktoryExecutorStrategy executorStrategy = client.getExecutorStrategy();
+        FaktoryTaskRegistry clientRegistry = client.getRegistry();
+        boolean shutdownHook = client.hasShutdownHook();
+        FaktorySpoolOptions spoolOptions = client.getSpoolOptions();
+        FaktoryMetrics metrics = client.getMetrics();
+
+        int concurrency = Math.max(1, client.getConcurrency()) * shardCount;
+        executorStrategy.validate(concurrency);
+        this.executor = executorStrategy.create(concurrency);
+        this.shutdownExecutor = executorStrategy.isShutdownWithClient();
+        this.registry = clientRegistry != null ? clientRegistry : new FaktoryTaskRegistry();
+
+        List<FaktoryClient> shards = new ArrayList<>(shardCount);
+        try {
+            client.withExecutor(executor).withRegistry(registry).withShutdownHook(false);
+            AtomicIntegerArray busy = new AtomicIntegerArray(shardCount);
+            for (int i = 0; i < shardCount; i++) {
+                client.withMetrics(metrics.isEnabled() ? new ShardMetrics(metrics, busy, i) : metrics);
+                shards.add(client.withWorkerId(workerId + "-" + i).build());
+                client.withSpool(null); // a spool directory has a single owner
+            }
+        } finally {
+            // leave the builder as it was handed to us
+            client.withWorkerId(workerId)
+                    .withExecutorStrategy(executorStrategy)
+                    .withRegistry(clientRegistry)
+                    .withShutdownHook(shutdownHook)
+                    .withSpool(spoolOptions)
+                    .withMetrics(metrics);
+        }
+        this.shards = Collections.unmodifiableList(shards);
+
+        if (shutdownHook) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                log.info("Shutdown: waiting up to 15 seconds for {} shards to finish current tasks", shardCount);
+                try {
+                    disconnect(false, 15);
+                } catch (IOException | FaktoryConnectionError e) {
+                    log.warn("Unable to disconnect", e);
+                }
+            }));
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Registers a handler for every shard. Typed handlers bind their args with the object mapper of the builder.
+     */
+    public void register(String jobType, Consumer<FaktoryJob> action) {
+        shards.get(0).register(jobType, action);
+    }
+
+    public void register(String jobType, FaktoryTaskOptions options, Consumer<FaktoryJob> action) {
+        shards.get(0).register(jobType, options, action);
+    }
+
+    public <T> void register(String jobType, Class<T> argsType, Consumer<T> action) {
+        shards.get(0).register(jobType, argsType, action);
+    }
+
+    public <T> void register(String jobType, FaktoryTaskOptions options, Class<T> argsType, Consumer<T> action) {
+        shards.get(0).register(jobType, options, argsType, action);
+    }
+
+    public void deregister(String jobType) {
+        registry.deregister(jobType);
+    }
+
+    public FaktoryTaskRegistry getRegistry() {
+        return registry;
+    }
+
+    public List<FaktoryClient> getShards() {
+        return shards;
+    }
+
+    /**
+     * Runs every shard on its own thread until all of them disconnect. If a shard stops with an error the others
+     * are disconnected gracefully and the first error is rethrown once they are done.
+     */
+    public void run() throws IOException, FaktoryConnectionError, NoSuchAlgorithmException {
+        AtomicReference<Exception> error = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>(shards.size());
+        for (FaktoryClient shard : shards) {
+            Thread thread = new Thread(() -> {
+                try {
+                    shard.run();
+                } catch (Exception e) {
+                    log.error("Shard {} stopped with an error, disconnecting the group", shard.getWorkerId(), e);
+                    if (error.compareAndSet(null, e)) {
+                        disconnectQuietly();
+                    }
+                }
+            }, "faktory-shard-" + shard.getWorkerId());
+            thread.start();
+            threads.add(thread);
+        }
+
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted: waiting up to 15 seconds for shards to finish current tasks", e);
+            disconnectQuietly();
+        } finally {
+            if (shutdownExecutor) {
+                executor.shutdown();
+            }
+        }
+
+        Exception e = error.get();
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        } else if (e instanceof FaktoryConnectionError) {
+            throw (FaktoryConnectionError) e;
+        } else if (e instanceof NoSuchAlgorithmException) {
+            throw (NoSuchAlgorithmException) e;
+        } else if (e != null) {
+            throw (RuntimeException) e;
+        }
+    }
+
+    /**
+     * Disconnects every shard, see {@link FaktoryClient#disconnect(boolean, long)}. Shards that are already
+     * disconnecting keep their deadline unless {@code force} is set.
+     */
+    public void disconnect(boolean force, long waitForSeconds) throws IOException, FaktoryConnectionError {
+        IOException ioError = null;
+        FaktoryConnectionError connectionError = null;
+        for (FaktoryClient shard : shards) {
+            if (shard.isDisconnecting() && !force) {
+                continue;
+            }
+            try {
+                shard.disconnect(force, waitForSeconds);
+            } catch (IOException e) {
+                ioError = ioError == null ? e : ioError;
+            } catch (FaktoryConnectionError e) {
+                connectionError = connectionError == null ? e : connectionError;
+            }
+        }
+        if (ioError != null) {
+            throw ioError;
+        } else if (connectionError != null) {
+            throw connectionError;
+        }
+    }
+
+    private void disconnectQuietly() {
+        try {
+            disconnect(false, 15);
+        } catch (IOException | FaktoryConnectionError e) {
+            log.warn("Unable to disconnect", e);
+        }
+    }
+
+    /**
+     * Forwards the metrics of a shard, replacing its executor saturation with the sum of every shard's.
+     */
+    private static class ShardMetrics implements FaktoryMetrics {
+
+        private final FaktoryMetrics delegate;
+        private final AtomicIntegerArray busy;
+        private final int shard;
+
+        ShardMetrics(FaktoryMetrics delegate, AtomicIntegerArray busy, int shard) {
+            this.delegate = delegate;
+            this.busy = busy;
+            this.shard = shard;
+        }
+
+        @Override
+        public void jobFetched(String jobType) {
+            delegate.jobFetched(jobType);
+        }
+
+        @Override
+        public void jobAcked(String jobType, long pendingNanos) {
+            delegate.jobAcked(jobType, pendingNanos);
+        }
+
+        @Override
+        public void jobFailed(String jobType, long pendingNanos) {
+            delegate.jobFailed(jobType, pendingNanos);
+        }
+
+        @Override
+        public void unknownJobType(String jobType) {
+            delegate.unknownJobType(jobType);
+        }
+
+        @Override
+        public void jobExecuted(String jobType, long executionNanos) {
+            delegate.jobExecuted(jobType, executionNanos);
+        }
+
+        @Override
+        public void jobTimedOut(String jobType) {
+            delegate.jobTimedOut(jobType);
+        }
+
+        @Override
+        public void dedupeHit(String jobType) {
+            delegate.dedupeHit(jobType);
+        }
+
+        @Override
+        public void dedupeMiss(String jobType) {
+            delegate.dedupeMiss(jobType);
+        }
+
+        @Override
+        public void fetched(long roundTripNanos, boolean empty) {
+            delegate.fetched(roundTripNanos, empty);
+        }
+
+        @Override
+        public void heartbeat(long roundTripNanos) {
+            delegate.heartbeat(roundTripNanos);
+        }
+
+        @Override
+        public void command(String command, long roundTripNanos) {
+            delegate.command(command, roundTripNanos);
+        }
+
+        @Override
+        public void executorSaturation(int busy, int concurrency) {
+            this.busy.set(shard, busy);
+            int total = 0;
+            for (int i = 0; i < this.busy.length(); i++) {
+                total += this.busy.get(i);
+            }
+            delegate.executorSaturation(total, concurrency * this.busy.length());
+        }
+    }
+
+    public static class Builder {
+
+        private FaktoryClient.Builder client;
+        private int shards = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Settings shared by every shard, where the concurrency applies to each shard.
+         */
+        public Builder withClient(FaktoryClient.Builder client) {
+            this.client = client;
+            return this;
+        }
+
+        public Builder withShards(int shards) {
+            this.shards = shards;
+            return this;
+        }
+
+        public FaktoryWorkerGroup build() throws URISyntaxException {
+            return new FaktoryWorkerGroup(this);
+        }
+    }
+}
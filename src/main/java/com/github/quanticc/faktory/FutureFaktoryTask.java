@@ -1,13 +1,28 @@
 package com.github.quanticc.faktory;
 
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public class FutureFaktoryTask {
 
     private final FaktoryJob faktoryJob;
     private final FaktoryTask faktoryTask;
     private final FutureTask<Void> future;
+    private final long createdNanos = System.nanoTime();
+
+    private volatile boolean timedOut;
+    private ScheduledFuture<?> timeout;
+    boolean started;
+    // claimed in the dedupe cache for this job, released once every task of the job reported
+    FaktoryClient.DedupeClaim dedupeClaim;
 
     public FutureFaktoryTask(FaktoryJob faktoryJob, FaktoryTask faktoryTask, FutureTask<Void> future) {
         this.faktoryJob = faktoryJob;
@@ -15,6 +30,42 @@ public class FutureFaktoryTask {
         this.future = future;
     }
 
+    /**
+     * Creates a task that adds itself to {@code completed} as soon as it finishes, fails or is cancelled.
+     */
+    public FutureFaktoryTask(FaktoryJob faktoryJob, FaktoryTask faktoryTask, Callable<Void> callable,
+                             Queue<FutureFaktoryTask> completed) {
+        this.faktoryJob = faktoryJob;
+        this.faktoryTask = faktoryTask;
+        this.future = new FutureTask<Void>(callable) {
+            @Override
+            protected void done() {
+                completed.offer(FutureFaktoryTask.this);
+            }
+        };
+    }
+
+    private FutureFaktoryTask(FaktoryJob faktoryJob, FaktoryTask faktoryTask, Supplier<CompletionStage<?>> action,
+                              Queue<FutureFaktoryTask> completed) {
+        this.faktoryJob = faktoryJob;
+        this.faktoryTask = faktoryTask;
+        this.future = new AsyncFutureTask(faktoryTask.getJobType(), action) {
+            @Override
+            protected void done() {
+                completed.offer(FutureFaktoryTask.this);
+            }
+        };
+    }
+
+    /**
+     * Creates a task that finishes when the stage returned by {@code action} completes, rather than when
+     * {@code action} returns. Cancelling the task cancels the stage.
+     */
+    static FutureFaktoryTask async(FaktoryJob faktoryJob, FaktoryTask faktoryTask, Supplier<CompletionStage<?>> action,
+                                   Queue<FutureFaktoryTask> completed) {
+        return new FutureFaktoryTask(faktoryJob, faktoryTask, action, completed);
+    }
+
     public FaktoryJob getFaktoryJob() {
         return faktoryJob;
     }
@@ -27,6 +78,89 @@ public class FutureFaktoryTask {
         return future;
     }
 
+    /**
+     * Cancels the task, interrupting it if running, once the given time has passed.
+     */
+    void scheduleTimeout(ScheduledExecutorService scheduler, long timeoutMillis) {
+        timeout = scheduler.schedule(() -> {
+            timedOut = true;
+            future.cancel(true);
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void cancelTimeout() {
+        if (timeout != null) {
+            timeout.cancel(false);
+        }
+    }
+
+    /**
+     * Whether the task was cancelled because it exceeded the timeout of its {@link FaktoryTaskOptions}.
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Nanoseconds since the task was handed to the executor, used to measure time spent pending.
+     */
+    public long getPendingNanos() {
+        return System.nanoTime() - createdNanos;
+    }
+
+    private static class AsyncFutureTask extends FutureTask<Void> {
+
+        private final String jobType;
+        private final Supplier<CompletionStage<?>> action;
+        private volatile CompletionStage<?> stage;
+
+        AsyncFutureTask(String jobType, Supplier<CompletionStage<?>> action) {
+            super(() -> null);
+            this.jobType = jobType;
+            this.action = action;
+        }
+
+        @Override
+        public void run() {
+            if (isDone()) {
+                return;
+            }
+            CompletionStage<?> started;
+            try {
+                started = action.get();
+            } catch (Throwable t) {
+                setException(t);
+                return;
+            }
+            if (started == null) {
+                setException(new NullPointerException("Async handler for " + jobType + " returned null"));
+                return;
+            }
+            stage = started;
+            started.whenComplete((ignored, error) -> {
+                if (error == null) {
+                    set(null);
+                } else {
+                    setException(error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error);
+                }
+            });
+            if (isCancelled()) { // cancelled before the stage was known
+                started.toCompletableFuture().cancel(false);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            CompletionStage<?> current = stage;
+            if (cancelled && current != null) {
+                current.toCompletableFuture().cancel(mayInterruptIfRunning);
+            }
+            return cancelled;
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,169 @@
+package com.github.quanticc.faktory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory {@link FaktoryDedupeCache} with a fixed footprint. Completed keys are stored as 64-bit hashes in two
+ * generations of open-addressing tables: new keys go to the young generation, which replaces the old one once it
+ * holds {@code capacity} keys or is half the TTL old. A key seen again while in the old generation moves to the
+ * young one, so keys that keep coming back survive, much like an LRU. A completed key is remembered for between
+ * half the TTL and the whole TTL, and the most recent {@code capacity} keys are always kept.
+ * <p>
+ * Two keys with the same hash are taken for the same job, which for 64-bit hashes is unlikely enough to ignore.
+ * The tables take {@code 32 * capacity} bytes, rounded up to a power of two.
+ */
+public class SimpleFaktoryDedupeCache implements FaktoryDedupeCache {
+
+    private static final long EMPTY = 0;
+
+    private final int capacity;
+    private final long generationNanos;
+    private final LongSupplier clock;
+    // keys claimed by jobs still running, bounded by the concurrency of the clients sharing the cache
+    private final Set<Long> running = new HashSet<>();
+
+    private long[] young;
+    private long[] old;
+    private int youngSize;
+    private int oldSize;
+    private long youngStarted;
+    private long oldStarted;
+
+    public SimpleFaktoryDedupeCache(int capacity, long ttl, TimeUnit unit) {
+        this(capacity, unit.toNanos(ttl), System::nanoTime);
+    }
+
+    SimpleFaktoryDedupeCache(int capacity, long ttlNanos, LongSupplier clock) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.generationNanos = Math.max(1, ttlNanos / 2);
+        this.clock = clock;
+        int tableSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+        this.young = new long[tableSize];
+        this.old = new long[tableSize];
+        this.youngStarted = clock.getAsLong();
+        this.oldStarted = youngStarted;
+    }
+
+    @Override
+    public synchronized boolean tryAcquire(String key) {
+        long hash = hash(key);
+        if (running.contains(hash)) {
+            return false;
+        }
+        rotateIfExpired();
+        if (contains(young, hash)) {
+            return false;
+        }
+        if (contains(old, hash)) {
+            insert(hash);
+            return false;
+        }
+        running.add(hash);
+        return true;
+    }
+
+    @Override
+    public synchronized void release(String key, boolean completed) {
+        long hash = hash(key);
+        if (running.remove(hash) && completed) {
+            rotateIfExpired();
+            insert(hash);
+        }
+    }
+
+    /**
+     * Keys of running jobs plus completed keys in either generation, where a promoted key counts twice.
+     */
+    public synchronized int size() {
+        return running.size() + youngSize + oldSize;
+    }
+
+    /**
+     * Keys go to the young generation only while it is younger than half the TTL, so a whole generation expires
+     * once the TTL has passed since it started.
+     */
+    private void rotateIfExpired() {
+        long now = clock.getAsLong();
+        if (now - youngStarted >= generationNanos) {
+            rotate(now);
+        }
+        if (oldSize > 0 && now - oldStarted >= 2 * generationNanos) {
+            Arrays.fill(old, EMPTY);
+            oldSize = 0;
+        }
+    }
+
+    private void rotate(long now) {
+        long[] table = old;
+        Arrays.fill(table, EMPTY);
+        old = young;
+        oldSize = youngSize;
+        oldStarted = youngStarted;
+        young = table;
+        youngSize = 0;
+        youngStarted = now;
+    }
+
+    private void insert(long hash) {
+        if (youngSize >= capacity) {
+            rotate(clock.getAsLong());
+        }
+        int mask = young.length - 1;
+        int index = (int) hash & mask;
+        while (young[index] != EMPTY) {
+            if (young[index] == hash) {
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        young[index] = hash;
+        youngSize++;
+    }
+
+    private static boolean contains(long[] table, long hash) {
+        int mask = table.length - 1;
+        int index = (int) hash & mask;
+        long slot;
+        while ((slot = table[index]) != EMPTY) {
+            if (slot == hash) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * FNV-1a over the UTF-8 bytes of the key, finished with the MurmurHash3 mixer so the low bits used to index
+     * the tables are well spread. Never returns the empty marker.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    @Override
+    public String toString() {
+        return "SimpleFaktoryDedupeCache{" +
+                "capacity=" + capacity +
+                ", ttl=" + TimeUnit.NANOSECONDS.toMillis(generationNanos * 2) + "ms" +
+                '}';
+    }
+}
@@ -0,0 +1,179 @@
+package com.github.quanticc.faktory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory {@link FaktoryMetrics} without external dependencies. Counters are kept per job type, latencies in
+ * {@link FaktoryHistogram}s.
+ */
+public class SimpleFaktoryMetrics implements FaktoryMetrics {
+
+    private final Map<String, LongAdder> fetched = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> acked = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> failed = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> unknownJobTypes = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> timedOut = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> dedupeHits = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> dedupeMisses = new ConcurrentHashMap<>();
+    private final Map<String, FaktoryHistogram> executionTime = new ConcurrentHashMap<>();
+    private final Map<String, FaktoryHistogram> commandLatency = new ConcurrentHashMap<>();
+    private final FaktoryHistogram pendingTime = new FaktoryHistogram();
+    private final FaktoryHistogram fetchLatency = new FaktoryHistogram();
+    private final FaktoryHistogram heartbeatLatency = new FaktoryHistogram();
+    private final LongAdder emptyFetches = new LongAdder();
+
+    private volatile int busyWorkers;
+    private volatile int concurrency;
+
+    @Override
+    public void jobFetched(String jobType) {
+        counter(fetched, jobType).increment();
+    }
+
+    @Override
+    public void jobAcked(String jobType, long pendingNanos) {
+        counter(acked, jobType).increment();
+        pendingTime.record(pendingNanos);
+    }
+
+    @Override
+    public void jobFailed(String jobType, long pendingNanos) {
+        counter(failed, jobType).increment();
+        pendingTime.record(pendingNanos);
+    }
+
+    @Override
+    public void unknownJobType(String jobType) {
+        counter(unknownJobTypes, jobType).increment();
+    }
+
+    @Override
+    public void jobExecuted(String jobType, long executionNanos) {
+        histogram(executionTime, jobType).record(executionNanos);
+    }
+
+    @Override
+    public void jobTimedOut(String jobType) {
+        counter(timedOut, jobType).increment();
+    }
+
+    @Override
+    public void dedupeHit(String jobType) {
+        counter(dedupeHits, jobType).increment();
+    }
+
+    @Override
+    public void dedupeMiss(String jobType) {
+        counter(dedupeMisses, jobType).increment();
+    }
+
+    @Override
+    public void fetched(long roundTripNanos, boolean empty) {
+        fetchLatency.record(roundTripNanos);
+        if (empty) {
+            emptyFetches.increment();
+        }
+    }
+
+    @Override
+    public void heartbeat(long roundTripNanos) {
+        heartbeatLatency.record(roundTripNanos);
+    }
+
+    @Override
+    public void command(String command, long roundTripNanos) {
+        histogram(commandLatency, command).record(roundTripNanos);
+    }
+
+    @Override
+    public void executorSaturation(int busy, int concurrency) {
+        this.busyWorkers = busy;
+        this.concurrency = concurrency;
+    }
+
+    public long getFetched(String jobType) {
+        return sum(fetched, jobType);
+    }
+
+    public long getAcked(String jobType) {
+        return sum(acked, jobType);
+    }
+
+    public long getFailed(String jobType) {
+        return sum(failed, jobType);
+    }
+
+    public long getUnknownJobTypes(String jobType) {
+        return sum(unknownJobTypes, jobType);
+    }
+
+    public long getTimedOut(String jobType) {
+        return sum(timedOut, jobType);
+    }
+
+    public long getDedupeHits(String jobType) {
+        return sum(dedupeHits, jobType);
+    }
+
+    public long getDedupeMisses(String jobType) {
+        return sum(dedupeMisses, jobType);
+    }
+
+    public long getEmptyFetches() {
+        return emptyFetches.sum();
+    }
+
+    public FaktoryHistogram getExecutionTime(String jobType) {
+        return histogram(executionTime, jobType);
+    }
+
+    public FaktoryHistogram getCommandLatency(String command) {
+        return histogram(commandLatency, command);
+    }
+
+    public FaktoryHistogram getPendingTime() {
+        return pendingTime;
+    }
+
+    public FaktoryHistogram getFetchLatency() {
+        return fetchLatency;
+    }
+
+    public FaktoryHistogram getHeartbeatLatency() {
+        return heartbeatLatency;
+    }
+
+    public Map<String, FaktoryHistogram> getExecutionTimes() {
+        return Collections.unmodifiableMap(executionTime);
+    }
+
+    public int getBusyWorkers() {
+        return busyWorkers;
+    }
+
+    /**
+     * Fraction of the concurrency slots that were busy at the last sample.
+     */
+    public double getExecutorSaturation() {
+        int slots = concurrency;
+        return slots == 0 ? 0 : (double) busyWorkers / slots;
+    }
+
+    private static LongAdder counter(Map<String, LongAdder> counters, String key) {
+        LongAdder counter = counters.get(key);
+        return counter != null ? counter : counters.computeIfAbsent(key, k -> new LongAdder());
+    }
+
+    private static FaktoryHistogram histogram(Map<String, FaktoryHistogram> histograms, String key) {
+        FaktoryHistogram histogram = histograms.get(key);
+        return histogram != null ? histogram : histograms.computeIfAbsent(key, k -> new FaktoryHistogram());
+    }
+
+    private static long sum(Map<String, LongAdder> counters, String key) {
+        LongAdder counter = counters.get(key);
+        return counter == null ? 0 : counter.sum();
+    }
+}
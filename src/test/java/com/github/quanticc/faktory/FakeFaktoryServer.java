@@ -0,0 +1,396 @@
+package com.github.quanticc.faktory;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process server speaking the subset of the Faktory protocol used by {@link FaktoryClient}: {@code HELLO},
+ * {@code PUSH}, {@code FETCH}, {@code ACK}, {@code FAIL}, {@code BEAT} and {@code END}. Queues are kept in memory.
+ * <p>
+ * Latency and faults can be injected to exercise the client: a delay before every reply, {@code -ERR} replies or
+ * dropped connections for the next matching commands, and replies written in small fragments.
+ */
+public class FakeFaktoryServer implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(FakeFaktoryServer.class);
+    private static final byte[] NIL = "$-1\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, BlockingDeque<String>> queues = new ConcurrentHashMap<>();
+    private final Map<String, String> reserved = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Object>> failures = new ConcurrentHashMap<>();
+    private final Map<String, Queue<String>> injectedErrors = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> injectedDrops = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> commandCounts = new ConcurrentHashMap<>();
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final Set<String> workerIds = ConcurrentHashMap.newKeySet();
+    private final Object jobsChanged = new Object();
+
+    private ServerSocket serverSocket;
+    private ExecutorService acceptor;
+    private volatile String password;
+    private volatile int iterations = 1;
+    private volatile long latencyMillis;
+    private volatile long fetchTimeoutMillis = 100;
+    private volatile int fragmentSize;
+    private volatile String workerState;
+
+    public FakeFaktoryServer start() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        acceptor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fake-faktory");
+            thread.setDaemon(true);
+            return thread;
+        });
+        acceptor.execute(this::accept);
+        return this;
+    }
+
+    public URI getUri() {
+        return URI.create("tcp://" + serverSocket.getInetAddress().getHostAddress() + ":" + serverSocket.getLocalPort());
+    }
+
+    public FakeFaktoryServer withPassword(String password, int iterations) {
+        this.password = password;
+        this.iterations = iterations;
+        return this;
+    }
+
+    /**
+     * Delay applied before every reply.
+     */
+    public FakeFaktoryServer withLatency(long millis) {
+        this.latencyMillis = millis;
+        return this;
+    }
+
+    /**
+     * How long an empty FETCH blocks before replying nil; the real server waits 2 seconds.
+     */
+    public FakeFaktoryServer withFetchTimeout(long millis) {
+        this.fetchTimeoutMillis = millis;
+        return this;
+    }
+
+    /**
+     * Writes every reply in chunks of the given size, flushing in between, to produce partial frames.
+     */
+    public FakeFaktoryServer withFragmentedReplies(int fragmentSize) {
+        this.fragmentSize = fragmentSize;
+        return this;
+    }
+
+    /**
+     * State returned to heartbeats, {@code quiet} or {@code terminate}, or {@code null} for {@code +OK}.
+     */
+    public void setWorkerState(String state) {
+        this.workerState = state;
+    }
+
+    /**
+     * Replies {@code -ERR message} to the next command with the given verb instead of running it.
+     */
+    public void failNext(String command, String message) {
+        injectedErrors.computeIfAbsent(command, c -> new ConcurrentLinkedQueue<>()).add("-ERR " + message);
+    }
+
+    /**
+     * Closes the connection when the next {@code count} commands with the given verb arrive, without replying.
+     */
+    public void dropNext(String command, int count) {
+        injectedDrops.computeIfAbsent(command, c -> new AtomicInteger()).addAndGet(count);
+    }
+
+    public void dropAllConnections() {
+        for (Socket socket : connections) {
+            closeQuietly(socket);
+        }
+    }
+
+    public void enqueue(String queue, String jobJson) {
+        queue(queue).add(jobJson);
+        jobsChanged();
+    }
+
+    public int queueSize(String queue) {
+        return queue(queue).size();
+    }
+
+    public int reservedSize() {
+        return reserved.size();
+    }
+
+    public Map<String, Map<String, Object>> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Worker ids seen in {@code HELLO}, producer-only connections have none.
+     */
+    public Set<String> getWorkerIds() {
+        return Collections.unmodifiableSet(workerIds);
+    }
+
+    public int count(String command) {
+        AtomicInteger count = commandCounts.get(command);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Waits until the given number of ACK and FAIL commands were processed.
+     */
+    public boolean awaitReports(int expected, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (jobsChanged) {
+            while (count("ACK") + count("FAIL") < expected) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                jobsChanged.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+            dropAllConnections();
+            acceptor.shutdownNow();
+        }
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                acceptor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.warn("Accept failed", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            OutputStream out = s.getOutputStream();
+            String nonce = password != null ? UUID.randomUUID().toString() : null;
+            reply(out, "+HI " + (nonce != null
+                    ? "{\"v\":2,\"s\":\"" + nonce + "\",\"i\":" + iterations + "}"
+                    : "{\"v\":2}"));
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                int space = line.indexOf(' ');
+                String command = space < 0 ? line : line.substring(0, space);
+                String argument = space < 0 ? "" : line.substring(space + 1);
+                commandCounts.computeIfAbsent(command, c -> new AtomicInteger()).incrementAndGet();
+                if (shouldDrop(command)) {
+                    log.debug("Dropping connection on {}", command);
+                    return;
+                }
+                Queue<String> errors = injectedErrors.get(command);
+                String error = errors != null ? errors.poll() : null;
+                if (error != null) {
+                    reply(out, error);
+                } else if ("END".equals(command)) {
+                    return;
+                } else {
+                    handle(out, command, argument, nonce);
+                }
+                if (("ACK".equals(command) || "FAIL".equals(command))) {
+                    jobsChanged();
+                }
+            }
+        } catch (SocketException e) {
+            log.trace("Connection closed", e);
+        } catch (IOException | InterruptedException e) {
+            log.debug("Connection failed", e);
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    private void handle(OutputStream out, String command, String argument, String nonce) throws IOException, InterruptedException {
+        switch (command) {
+            case "HELLO": {
+                Map<String, Object> hello = objectMapper.readValue(argument, new TypeReference<Map<String, Object>>() {
+                });
+                if (hello.get("wid") != null) {
+                    workerIds.add(String.valueOf(hello.get("wid")));
+                }
+                if (nonce != null && !hash(password + nonce, iterations).equals(hello.get("pwdhash"))) {
+                    reply(out, "-ERR Invalid password");
+                } else {
+                    reply(out, "+OK");
+                }
+                break;
+            }
+            case "PUSH": {
+                Map<String, Object> job = objectMapper.readValue(argument, new TypeReference<Map<String, Object>>() {
+                });
+                if (job.get("jid") == null || job.get("jobtype") == null) {
+                    reply(out, "-ERR jobs must have a jid and jobtype");
+                } else {
+                    Object queue = job.get("queue");
+                    enqueue(queue != null ? queue.toString() : "default", argument);
+                    reply(out, "+OK");
+                }
+                break;
+            }
+            case "FETCH": {
+                String job = fetch(argument.isEmpty() ? new String[]{"default"} : argument.split(" "));
+                if (job == null) {
+                    reply(out, NIL);
+                } else {
+                    byte[] bytes = job.getBytes(StandardCharsets.UTF_8);
+                    reply(out, "$" + bytes.length + "\r\n" + job);
+                }
+                break;
+            }
+            case "ACK": {
+                Map<String, Object> payload = objectMapper.readValue(argument, new TypeReference<Map<String, Object>>() {
+                });
+                reserved.remove(String.valueOf(payload.get("jid")));
+                reply(out, "+OK");
+                break;
+            }
+            case "FAIL": {
+                Map<String, Object> payload = objectMapper.readValue(argument, new TypeReference<Map<String, Object>>() {
+                });
+                String jid = String.valueOf(payload.get("jid"));
+                reserved.remove(jid);
+                failures.put(jid, payload);
+                reply(out, "+OK");
+                break;
+            }
+            case "BEAT": {
+                String state = workerState;
+                if (state == null) {
+                    reply(out, "+OK");
+                } else {
+                    String json = "{\"state\":\"" + state + "\"}";
+                    reply(out, "$" + json.length() + "\r\n" + json);
+                }
+                break;
+            }
+            default:
+                reply(out, "-ERR Unknown command " + command);
+        }
+    }
+
+    private String fetch(String[] queueNames) throws InterruptedException, IOException {
+        long deadline = System.currentTimeMillis() + fetchTimeoutMillis;
+        synchronized (jobsChanged) {
+            while (true) {
+                for (String name : queueNames) {
+                    String job = queue(name).poll();
+                    if (job != null) {
+                        Map<String, Object> map = objectMapper.readValue(job, new TypeReference<Map<String, Object>>() {
+                        });
+                        reserved.put(String.valueOf(map.get("jid")), job);
+                        return job;
+                    }
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return null;
+                }
+                jobsChanged.wait(remaining);
+            }
+        }
+    }
+
+    private boolean shouldDrop(String command) {
+        AtomicInteger drops = injectedDrops.get(command);
+        if (drops == null) {
+            return false;
+        }
+        int remaining;
+        do {
+            remaining = drops.get();
+            if (remaining <= 0) {
+                return false;
+            }
+        } while (!drops.compareAndSet(remaining, remaining - 1));
+        return true;
+    }
+
+    private void reply(OutputStream out, String reply) throws IOException, InterruptedException {
+        reply(out, (reply + "\r\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void reply(OutputStream out, byte[] bytes) throws IOException, InterruptedException {
+        if (latencyMillis > 0) {
+            Thread.sleep(latencyMillis);
+        }
+        int chunk = fragmentSize > 0 ? fragmentSize : bytes.length;
+        for (int i = 0; i < bytes.length; i += chunk) {
+            out.write(bytes, i, Math.min(chunk, bytes.length - i));
+            out.flush();
+        }
+    }
+
+    private BlockingDeque<String> queue(String name) {
+        return queues.computeIfAbsent(name, n -> new LinkedBlockingDeque<>());
+    }
+
+    private void jobsChanged() {
+        synchronized (jobsChanged) {
+            jobsChanged.notifyAll();
+        }
+    }
+
+    private static String hash(String plaintext, int iterations) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] encoded = digest.digest(plaintext.getBytes(StandardCharsets.UTF_8));
+            for (int i = 1; i < iterations; i++) {
+                encoded = digest.digest(encoded);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : encoded) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            log.trace("Unable to close socket", e);
+        }
+    }
+}
@@ -0,0 +1,994 @@
+package com.github.quanticc.faktory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+public class FaktoryClientTest {
+
+    private FakeFaktoryServer server;
+    private FaktoryClient client;
+    private Thread runner;
+    private final AtomicReference<Exception> runError = new AtomicReference<>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeFaktoryServer().start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (runner != null) {
+            client.disconnect(false, 5);
+            runner.join(TimeUnit.SECONDS.toMillis(10));
+            assertFalse("run() did not return", runner.isAlive());
+            assertNull(runError.get());
+        }
+        server.close();
+    }
+
+    @Test
+    public void processesAndAcknowledgesSubmittedJobs() throws Exception {
+        client = client().build();
+        AtomicInteger processed = new AtomicInteger();
+        client.register("TestJob", job -> processed.incrementAndGet());
+        client.submitAll(jobs(50));
+
+        start();
+
+        assertTrue(server.awaitReports(50, 10_000));
+        assertEquals(50, processed.get());
+        assertEquals(50, server.count("ACK"));
+        assertTrue(server.getFailures().isEmpty());
+        assertEquals(0, server.reservedSize());
+    }
+
+    @Test
+    public void coalescesReports() throws Exception {
+        client = client().withReportBatchSize(8).withReportFlushInterval(20).build();
+        client.register("TestJob", job -> {
+        });
+        List<FaktoryJob> jobs = jobs(49);
+        jobs.add(FaktoryJob.builder().withJobId("quoted\"jid").withJobType("TestJob").build());
+        client.submitAll(jobs);
+
+        start();
+
+        assertTrue(server.awaitReports(50, 10_000));
+        assertEquals(50, server.count("ACK"));
+        waitFor(() -> server.reservedSize() == 0);
+    }
+
+    @Test
+    public void failsJobsWhoseHandlerThrows() throws Exception {
+        client = client().build();
+        client.register("TestJob", job -> {
+            if ("3".equals(job.getJobId())) {
+                throw new IllegalStateException("bad input");
+            }
+        });
+        client.submitAll(jobs(5));
+
+        start();
+
+        assertTrue(server.awaitReports(5, 10_000));
+        assertEquals(4, server.count("ACK"));
+        Map<String, Object> failure = server.getFailures().get("3");
+        assertNotNull(failure);
+        assertEquals("IllegalStateException", failure.get("errtype"));
+        assertEquals("bad input", failure.get("message"));
+    }
+
+    @Test
+    public void reportsTasksAsSoonAsTheyFinish() throws Exception {
+        client = client().withConcurrency(1).build();
+        client.register("TestJob", job -> {
+        });
+        client.submitAll(jobs(20));
+        long began = System.nanoTime();
+
+        start();
+
+        assertTrue(server.awaitReports(20, 10_000));
+        // a saturated worker used to sleep 250 ms between scans for finished tasks
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - began) < 3_000);
+        assertEquals(20, server.count("ACK"));
+    }
+
+    @Test
+    public void failsJobsWithUnknownType() throws Exception {
+        client = client().build();
+        client.register("OtherJob", job -> {
+        });
+        client.submitAll(jobs(2));
+
+        start();
+
+        assertTrue(server.awaitReports(2, 10_000));
+        assertEquals(2, server.getFailures().size());
+        assertEquals(2, client.getRegistry().getUnknownJobTypeCount());
+    }
+
+    @Test
+    public void looksUpHandlersByJobType() throws Exception {
+        client = client().build();
+        for (int i = 0; i < 100; i++) {
+            client.register("Job" + i, job -> {
+            });
+        }
+        client.register("Job42", job -> {
+        });
+
+        FaktoryTask[] tasks = client.getRegisteredTasks(
+                FaktoryJob.builder().withJobId("1").withJobType("Job42").build());
+        assertEquals(2, tasks.length);
+        for (FaktoryTask task : tasks) {
+            assertEquals("Job42", task.getJobType());
+        }
+        assertEquals(0, client.getRegisteredTasks(
+                FaktoryJob.builder().withJobId("2").withJobType("Job100").build()).length);
+    }
+
+    @Test
+    public void recordsMetrics() throws Exception {
+        SimpleFaktoryMetrics metrics = new SimpleFaktoryMetrics();
+        client = client().withMetrics(metrics).build();
+        client.register("TestJob", job -> {
+            if ("0".equals(job.getJobId())) {
+                throw new IllegalStateException("bad input");
+            }
+        });
+        client.submitAll(jobs(10));
+
+        start();
+
+        assertTrue(server.awaitReports(10, 10_000));
+        waitFor(() -> metrics.getCommandLatency("ACK").getCount() == 9);
+        assertEquals(10, metrics.getFetched("TestJob"));
+        assertEquals(9, metrics.getAcked("TestJob"));
+        assertEquals(1, metrics.getFailed("TestJob"));
+        assertEquals(10, metrics.getExecutionTime("TestJob").getCount());
+        assertEquals(10, metrics.getPendingTime().getCount());
+        assertTrue(metrics.getFetchLatency().getCount() >= 10);
+    }
+
+    @Test
+    public void handlesFragmentedReplies() throws Exception {
+        server.withFragmentedReplies(3);
+        client = client().build();
+        AtomicInteger processed = new AtomicInteger();
+        client.register("TestJob", job -> processed.incrementAndGet());
+        client.submitAll(jobs(10));
+
+        start();
+
+        assertTrue(server.awaitReports(10, 10_000));
+        assertEquals(10, processed.get());
+    }
+
+    @Test
+    public void processesPrefetchedJobs() throws Exception {
+        client = client().withPrefetch(8).build();
+        AtomicInteger processed = new AtomicInteger();
+        client.register("TestJob", job -> processed.incrementAndGet());
+        client.submitAll(jobs(50));
+
+        start();
+
+        assertTrue(server.awaitReports(50, 10_000));
+        assertEquals(50, processed.get());
+        assertEquals(50, server.count("ACK"));
+        assertEquals(0, server.reservedSize());
+    }
+
+    @Test
+    public void returnsPrefetchedJobsWhenQuieted() throws Exception {
+        client = client().withConcurrency(1).withPrefetch(4).build();
+        CountDownLatch release = new CountDownLatch(1);
+        client.register("TestJob", job -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        client.submitAll(jobs(10));
+
+        start();
+
+        waitFor(() -> server.reservedSize() == 5);
+        server.setWorkerState("quiet");
+        waitFor(() -> server.getFailures().size() == 4);
+        release.countDown();
+
+        assertTrue(server.awaitReports(5, 10_000));
+        assertEquals(1, server.count("ACK"));
+        assertEquals(0, server.reservedSize());
+        assertEquals(5, server.queueSize("default"));
+    }
+
+    @Test
+    public void sendsHeartbeatsWhileFetchBlocks() throws Exception {
+        server.withFetchTimeout(5_000);
+        client = client().build();
+
+        start();
+
+        waitFor(() -> server.count("BEAT") >= 2);
+        assertEquals(1, server.count("FETCH"));
+    }
+
+    @Test
+    public void terminatesWhenToldByHeartbeat() throws Exception {
+        client = client().build();
+        client.register("TestJob", job -> {
+        });
+
+        start();
+        server.setWorkerState("terminate");
+
+        runner.join(10_000);
+        assertFalse(runner.isAlive());
+        assertNull(runError.get());
+    }
+
+    @Test
+    public void stopsHeartbeatsWhenRunFails() throws Exception {
+        client = client()
+                .withConsumerInterceptor(new FaktoryConsumerInterceptor() {
+                    @Override
+                    public void jobFetched(FaktoryJob job, long queueWaitNanos) {
+                        throw new IllegalStateException("Broken interceptor");
+                    }
+                })
+                .build();
+        client.register("TestJob", job -> {
+        });
+        AtomicReference<Exception> error = new AtomicReference<>();
+        Thread worker = new Thread(() -> {
+            try {
+                client.run();
+            } catch (Exception e) {
+                error.set(e);
+            }
+        }, "faktory-client-test");
+        worker.start();
+        waitFor(() -> server.count("BEAT") > 0);
+
+        server.enqueue("default", "{\"jid\":\"0\",\"jobtype\":\"TestJob\",\"args\":[]}");
+
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse("run() did not return", worker.isAlive());
+        assertTrue(error.get() instanceof IllegalStateException);
+        int beats = server.count("BEAT");
+        Thread.sleep(2500);
+        assertEquals(beats, server.count("BEAT"));
+    }
+
+    @Test
+    public void stopsWhenFaktoryRefusesToReconnect() throws Exception {
+        client = client().build();
+        client.register("TestJob", job -> {
+        });
+        AtomicReference<Exception> error = new AtomicReference<>();
+        Thread worker = new Thread(() -> {
+            try {
+                client.run();
+            } catch (Exception e) {
+                error.set(e);
+            }
+        }, "faktory-client-test");
+        worker.start();
+        waitFor(() -> server.count("BEAT") > 0);
+
+        for (int i = 0; i < 10; i++) {
+            server.failNext("HELLO", "Invalid password");
+        }
+        server.dropAllConnections();
+
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse("run() did not return", worker.isAlive());
+        assertTrue(error.get() instanceof FaktoryHandshakeError);
+        assertEquals("-ERR Invalid password", error.get().getMessage());
+    }
+
+    @Test
+    public void roundRobinKeepsLowPriorityQueuesMoving() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            server.enqueue("critical", "{\"jid\":\"c" + i + "\",\"jobtype\":\"TestJob\",\"args\":[]}");
+            server.enqueue("low", "{\"jid\":\"l" + i + "\",\"jobtype\":\"TestJob\",\"args\":[]}");
+        }
+        client = client()
+                .withConcurrency(1)
+                .withQueues(new ArrayList<>(Arrays.asList("critical", "low")))
+                .withFetchStrategy(FaktoryFetchStrategy.roundRobin())
+                .build();
+        List<String> processed = Collections.synchronizedList(new ArrayList<>());
+        client.register("TestJob", job -> processed.add(job.getJobId()));
+
+        start();
+
+        assertTrue(server.awaitReports(20, 10_000));
+        long lowFirstHalf = processed.subList(0, 10).stream().filter(jid -> jid.startsWith("l")).count();
+        assertTrue("low queue starved: " + processed, lowFirstHalf >= 3);
+    }
+
+    @Test
+    public void limitsConcurrencyPerTask() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue("default", "{\"jid\":\"s" + i + "\",\"jobtype\":\"SlowJob\",\"args\":[]}");
+        }
+        client = client().build();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ExecutorService slowExecutor = Executors.newCachedThreadPool(runnable -> new Thread(runnable, "slow-job"));
+        AtomicReference<String> slowThread = new AtomicReference<>();
+        client.register("SlowJob", FaktoryTaskOptions.builder()
+                .withMaxConcurrency(1)
+                .withExecutor(slowExecutor)
+                .build(), job -> {
+            slowThread.set(Thread.currentThread().getName());
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+        AtomicInteger fast = new AtomicInteger();
+        client.register("TestJob", job -> fast.incrementAndGet());
+        client.submitAll(jobs(20));
+
+        start();
+
+        waitFor(() -> server.count("ACK") == 20);
+        assertEquals(20, fast.get());
+        release.countDown();
+        assertTrue(server.awaitReports(23, 10_000));
+        assertEquals(1, maxRunning.get());
+        assertEquals("slow-job", slowThread.get());
+        slowExecutor.shutdown();
+    }
+
+    @Test
+    public void failsJobsThatTimeOut() throws Exception {
+        SimpleFaktoryMetrics metrics = new SimpleFaktoryMetrics();
+        client = client().withMetrics(metrics).build();
+        client.register("TestJob", FaktoryTaskOptions.builder().withTimeout(100).build(), job -> {
+            if ("0".equals(job.getJobId())) {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        client.submitAll(jobs(3));
+
+        start();
+
+        assertTrue(server.awaitReports(3, 10_000));
+        assertEquals(2, server.count("ACK"));
+        Map<String, Object> failure = server.getFailures().get("0");
+        assertNotNull(failure);
+        assertEquals("TimeoutException", failure.get("errtype"));
+        assertEquals(1, metrics.getTimedOut("TestJob"));
+    }
+
+    @Test
+    public void asyncHandlersHoldSlotsWithoutThreads() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        client = client().withConcurrency(4).withExecutor(executor).build();
+        List<CompletableFuture<Void>> work = Collections.synchronizedList(new ArrayList<>());
+        client.registerAsync("TestJob", job -> {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            work.add(result);
+            return result;
+        });
+        client.submitAll(jobs(6));
+
+        start();
+
+        waitFor(() -> work.size() == 4);
+        Thread.sleep(100);
+        assertEquals(4, work.size());
+        assertEquals(4, server.reservedSize());
+        work.get(0).completeExceptionally(new IllegalStateException("bad input"));
+        for (int i = 1; i < 4; i++) {
+            work.get(i).complete(null);
+        }
+        waitFor(() -> work.size() == 6);
+        work.get(4).complete(null);
+        work.get(5).complete(null);
+
+        assertTrue(server.awaitReports(6, 10_000));
+        assertEquals(5, server.count("ACK"));
+        assertEquals(1, server.getFailures().size());
+        executor.shutdown();
+    }
+
+    @Test
+    public void failsAsyncJobsWhoseHandlerReturnsNull() throws Exception {
+        client = client().build();
+        client.registerAsync("TestJob", job -> null);
+        client.submitAll(jobs(2));
+
+        start();
+
+        assertTrue(server.awaitReports(2, 10_000));
+        assertEquals(2, server.getFailures().size());
+        assertEquals("NullPointerException", server.getFailures().get("0").get("errtype"));
+        waitFor(() -> server.reservedSize() == 0);
+    }
+
+    @Test
+    public void ignoresConsumerInterceptorErrorsAfterAsyncJobs() throws Exception {
+        client = client()
+                .withConsumerInterceptor(new FaktoryConsumerInterceptor() {
+                    @Override
+                    public void afterExecute(FaktoryJob job, Object context, Throwable error, long executionNanos) {
+                        throw new IllegalStateException("tracing is down");
+                    }
+                })
+                .build();
+        client.registerAsync("TestJob", job -> CompletableFuture.completedFuture(null));
+        client.registerAsync("NullJob", job -> null);
+        client.submitAll(jobs(3));
+        client.submit(FaktoryJob.builder().withJobId("n").withJobType("NullJob").build());
+
+        start();
+
+        assertTrue(server.awaitReports(4, 10_000));
+        assertEquals(3, server.count("ACK"));
+        assertEquals("NullPointerException", server.getFailures().get("n").get("errtype"));
+    }
+
+    @Test
+    public void interceptorsPropagateContextThroughCustom() throws Exception {
+        List<String> traces = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger pushed = new AtomicInteger();
+        AtomicInteger executed = new AtomicInteger();
+        AtomicInteger reported = new AtomicInteger();
+        AtomicInteger queueWaits = new AtomicInteger();
+        client = client()
+                .withProducerInterceptor(new FaktoryProducerInterceptor() {
+                    @Override
+                    public FaktoryJob beforePush(FaktoryJob job) {
+                        return job.toBuilder()
+                                .putCustom("trace", "trace-" + job.getJobId())
+                                .withEnqueuedAt(Instant.now().toString())
+                                .build();
+                    }
+
+                    @Override
+                    public void afterPush(FaktoryJob job, Throwable error, long pushNanos) {
+                        assertNull(error);
+                        pushed.incrementAndGet();
+                    }
+                })
+                .withConsumerInterceptor(new FaktoryConsumerInterceptor() {
+                    @Override
+                    public void jobFetched(FaktoryJob job, long queueWaitNanos) {
+                        if (queueWaitNanos >= 0) {
+                            queueWaits.incrementAndGet();
+                        }
+                    }
+
+                    @Override
+                    public Object beforeExecute(FaktoryJob job) {
+                        String name = Thread.currentThread().getName();
+                        Thread.currentThread().setName((String) job.getCustom().get("trace"));
+                        return name;
+                    }
+
+                    @Override
+                    public void afterExecute(FaktoryJob job, Object context, Throwable error, long executionNanos) {
+                        Thread.currentThread().setName((String) context);
+                        executed.incrementAndGet();
+                    }
+
+                    @Override
+                    public void jobReported(FaktoryJob job, long reportNanos) {
+                        reported.incrementAndGet();
+                    }
+                })
+                .build();
+        client.register("TestJob", job -> traces.add(Thread.currentThread().getName()));
+        client.submit(jobs(1).get(0));
+        client.submitAll(jobs(4).subList(1, 4));
+
+        start();
+
+        assertTrue(server.awaitReports(4, 10_000));
+        waitFor(() -> reported.get() == 4);
+        assertEquals(4, pushed.get());
+        assertEquals(4, executed.get());
+        assertEquals(4, queueWaits.get());
+        Collections.sort(traces);
+        assertEquals(Arrays.asList("trace-0", "trace-1", "trace-2", "trace-3"), traces);
+    }
+
+    @Test
+    public void acknowledgesDuplicatesWithoutRunningThem() throws Exception {
+        SimpleFaktoryMetrics metrics = new SimpleFaktoryMetrics();
+        client = client()
+                .withMetrics(metrics)
+                .withDedupeCache(new SimpleFaktoryDedupeCache(100, 1, TimeUnit.MINUTES))
+                .build();
+        AtomicInteger processed = new AtomicInteger();
+        client.register("TestJob", job -> processed.incrementAndGet());
+        // the first two are delivered again, as after a reservation expired
+        List<FaktoryJob> jobs = new ArrayList<>(jobs(5));
+        jobs.addAll(jobs(2));
+        client.submitAll(jobs);
+
+        start();
+
+        assertTrue(server.awaitReports(7, 10_000));
+        assertEquals(5, processed.get());
+        assertEquals(7, server.count("ACK"));
+        assertEquals(2, metrics.getDedupeHits("TestJob"));
+        assertEquals(5, metrics.getDedupeMisses("TestJob"));
+    }
+
+    @Test
+    public void runsRetryWhenAnotherHandlerOfTheJobFailed() throws Exception {
+        client = client()
+                .withDedupeCache(new SimpleFaktoryDedupeCache(100, 1, TimeUnit.MINUTES))
+                .build();
+        AtomicInteger failing = new AtomicInteger();
+        AtomicInteger succeeding = new AtomicInteger();
+        client.register("TestJob", job -> succeeding.incrementAndGet());
+        // fails after the other handler of the job already succeeded
+        client.register("TestJob", job -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            failing.incrementAndGet();
+            throw new IllegalStateException("boom");
+        });
+        client.submitAll(jobs(1));
+
+        start();
+
+        assertTrue(server.awaitReports(2, 10_000));
+        // Faktory retries the failed job with the same jid
+        client.submitAll(jobs(1));
+        assertTrue(server.awaitReports(4, 10_000));
+        assertEquals(2, failing.get());
+        assertEquals(2, succeeding.get());
+    }
+
+    @Test
+    public void bindsTypedArgs() throws Exception {
+        server.enqueue("default", "{\"jid\":\"a\",\"jobtype\":\"Greet\",\"args\":[{\"name\":\"Ann\",\"times\":2}]}");
+        server.enqueue("default", "{\"jid\":\"b\",\"jobtype\":\"Greet\",\"args\":[\"not an object\"]}");
+        client = client().build();
+        List<String> greetings = Collections.synchronizedList(new ArrayList<>());
+        client.register("Greet", Greeting.class, greeting -> greetings.add(greeting.name + "x" + greeting.times));
+        client.register("Sum", int[].class, numbers -> greetings.add("sum=" + (numbers[0] + numbers[1])));
+        client.submit(FaktoryJob.builder().withJobId("c").withJobType("Sum").withArgs(Arrays.asList(1, 2)).build());
+
+        start();
+
+        assertTrue(server.awaitReports(3, 10_000));
+        assertEquals(2, server.count("ACK"));
+        assertTrue(greetings.contains("Annx2"));
+        assertTrue(greetings.contains("sum=3"));
+        assertEquals("UncheckedIOException", server.getFailures().get("b").get("errtype"));
+    }
+
+    @Test
+    public void processesLazyPayloads() throws Exception {
+        client = client().withLazyPayloads(true).build();
+        List<String> seen = Collections.synchronizedList(new ArrayList<>());
+        client.register("TestJob", job -> seen.add(job.getJobId() + "=" + job.getArgs().get(0)));
+        client.register("Greet", Greeting.class, greeting -> seen.add(greeting.name));
+        client.submitAll(jobs(3));
+        server.enqueue("default", "{\"jid\":\"a\",\"jobtype\":\"Greet\",\"args\":[{\"name\":\"Ann\"}]}");
+
+        start();
+
+        assertTrue(server.awaitReports(4, 10_000));
+        assertEquals(4, server.count("ACK"));
+        assertTrue(seen.containsAll(Arrays.asList("0=0", "1=1", "2=2", "Ann")));
+    }
+
+    @Test
+    public void submitAllReportsRejectedJobs() throws Exception {
+        client = client().build();
+        server.failNext("PUSH", "queue is full");
+        List<FaktoryJob> jobs = jobs(10);
+        try {
+            client.submitAll(jobs);
+            fail("Expected a batch error");
+        } catch (FaktoryBatchError e) {
+            assertEquals(1, e.getFailures().size());
+            Throwable cause = e.getFailures().get(jobs.get(0));
+            assertTrue(cause instanceof FaktoryConnectionError);
+            assertEquals("-ERR queue is full", cause.getMessage());
+        }
+        assertEquals(9, server.queueSize("default"));
+    }
+
+    @Test
+    public void submitAllCountsEveryFailedPushOfARepeatedJob() throws Exception {
+        client = client().build();
+        server.failNext("PUSH", "queue is full");
+        server.failNext("PUSH", "queue is full");
+        FaktoryJob job = jobs(1).get(0);
+        try {
+            client.submitAll(Arrays.asList(job, job));
+            fail("Expected a batch error");
+        } catch (FaktoryBatchError e) {
+            assertEquals(1, e.getFailures().size());
+            assertEquals(2, e.getFailedCount());
+            assertEquals("2 of 2 jobs could not be pushed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void submitsToJobQueue() throws Exception {
+        client = client().build();
+        client.submit(FaktoryJob.builder().withJobId("1").withJobType("TestJob").withQueue("critical").build());
+        client.submitAsync(FaktoryJob.builder().withJobId("2").withJobType("TestJob").withQueue("critical").build())
+                .get(10, TimeUnit.SECONDS);
+        assertEquals(2, server.queueSize("critical"));
+        assertEquals(0, server.queueSize("default"));
+    }
+
+    @Test
+    public void submitAllRespectsInFlightLimit() throws Exception {
+        client = client().withMaxPushesInFlight(4).build();
+        client.submitAll(jobs(1000));
+        assertEquals(1000, server.queueSize("default"));
+    }
+
+    @Test
+    public void submitAsyncCompletesAfterReply() throws Exception {
+        client = client().build();
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        for (FaktoryJob job : jobs(20)) {
+            results.add(client.submitAsync(job));
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+        assertEquals(20, server.queueSize("default"));
+    }
+
+    @Test
+    public void authenticatesWithPassword() throws Exception {
+        server.withPassword("secret", 5);
+        client = client().withPassword("secret").build();
+        client.submit(jobs(1).get(0));
+        assertEquals(1, server.queueSize("default"));
+    }
+
+    @Test
+    public void preconnectsBeforeTheFirstFetch() throws Exception {
+        server.withPassword("secret", 5);
+        client = client().withPassword("secret").withConnectionPoolSize(3).withPreconnect(2).build();
+        AtomicInteger processed = new AtomicInteger();
+        client.register("TestJob", job -> processed.incrementAndGet());
+
+        start();
+
+        waitFor(() -> server.count("FETCH") > 0);
+        // fetch, heartbeat and two report connections
+        assertEquals(4, server.count("HELLO"));
+        client.submitAll(jobs(10));
+        assertTrue(server.awaitReports(10, 10_000));
+        assertEquals(10, processed.get());
+    }
+
+    @Test(expected = FaktoryConnectionError.class)
+    public void rejectsWrongPassword() throws Exception {
+        server.withPassword("secret", 5);
+        client = client().withPassword("wrong").build();
+        client.submit(jobs(1).get(0));
+    }
+
+    @Test
+    public void reconnectsAfterDroppedConnection() throws Exception {
+        client = client().withConnectionPoolSize(1).build();
+        server.dropNext("PUSH", 1);
+        try {
+            client.submit(jobs(1).get(0));
+            fail("Expected the dropped connection to surface");
+        } catch (IOException e) {
+            // expected
+        }
+        client.submit(jobs(1).get(0));
+        assertEquals(1, server.queueSize("default"));
+    }
+
+    @Test
+    public void retriesOnceWhenServerClosedAnIdleConnection() throws Exception {
+        client = client().withConnectionPoolSize(1).build();
+        client.submit(jobs(1).get(0));
+        server.dropAllConnections();
+        Thread.sleep(50);
+
+        client.submit(jobs(1).get(0));
+
+        assertEquals(2, server.queueSize("default"));
+        assertEquals(2, server.count("HELLO"));
+    }
+
+    @Test
+    public void reusesPooledReportConnections() throws Exception {
+        client = client().withConnectionPoolSize(2).build();
+        for (FaktoryJob job : jobs(10)) {
+            client.submit(job);
+        }
+        assertEquals(10, server.queueSize("default"));
+        // each of the two report connections is opened once
+        assertEquals(2, server.count("HELLO"));
+    }
+
+    @Test
+    public void blockedFetchDoesNotHoldUpOtherChannels() throws Exception {
+        server.withFetchTimeout(5_000);
+        client = client().build();
+        client.register("TestJob", job -> {
+        });
+
+        start();
+
+        waitFor(() -> server.count("FETCH") == 1);
+        int beats = server.count("BEAT");
+        waitFor(() -> server.count("BEAT") > beats);
+        long start = System.nanoTime();
+        client.submit(FaktoryJob.builder().withJobId("x").withJobType("TestJob").withQueue("other").build());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2_000);
+        assertEquals(1, server.queueSize("other"));
+        assertEquals(1, server.count("FETCH"));
+    }
+
+    @Test
+    public void connectAllOpensEveryChannelUpFront() throws Exception {
+        AtomicInteger initialized = new AtomicInteger();
+        FaktoryConnectionPool pool = new FaktoryConnectionPool(server.getUri(), 2, connection -> {
+            initialized.incrementAndGet();
+            connection.handshake();
+            connection.connect("{\"v\":2}");
+        });
+        try {
+            pool.connectAll(2);
+            assertEquals(4, initialized.get());
+            assertEquals(4, server.count("HELLO"));
+            pool.execute(FaktoryConnectionPool.Channel.FETCH, connection -> null);
+            pool.execute(FaktoryConnectionPool.Channel.HEARTBEAT, connection -> null);
+            pool.execute(FaktoryConnectionPool.Channel.REPORT, connection -> null);
+            assertEquals(4, initialized.get());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void processesJobsOverNioTransport() throws Exception {
+        client = client()
+                .withTransportOptions(FaktoryTransportOptions.builder().withTransport(FaktoryTransport.NIO).build())
+                .withReportBatchSize(8)
+                .build();
+        AtomicInteger processed = new AtomicInteger();
+        client.register("TestJob", job -> processed.incrementAndGet());
+        client.submitAll(jobs(200));
+
+        start();
+
+        assertTrue(server.awaitReports(200, 10_000));
+        assertEquals(200, processed.get());
+        assertEquals(200, server.count("ACK"));
+    }
+
+    @Test
+    public void sharesEventLoopsAcrossNioConnections() throws Exception {
+        FaktoryTransportOptions nio = FaktoryTransportOptions.builder().withTransport(FaktoryTransport.NIO).build();
+        List<FaktoryClient> clients = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            FaktoryClient producer = client().withTransportOptions(nio).build();
+            producer.submit(jobs(1).get(0));
+            clients.add(producer);
+        }
+        assertEquals(16, server.queueSize("default"));
+        long loops = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("faktory-nio-"))
+                .count();
+        assertTrue(loops >= 1 && loops <= 4);
+        for (FaktoryClient producer : clients) {
+            producer.disconnect(true, 0);
+        }
+    }
+
+    @Test
+    public void readTimeoutDropsStalledConnection() throws Exception {
+        server.withLatency(5_000);
+        for (FaktoryTransport.Factory transport : Arrays.asList(FaktoryTransport.BLOCKING, FaktoryTransport.NIO)) {
+            FaktoryClient stalled = client()
+                    .withTransportOptions(FaktoryTransportOptions.builder()
+                            .withTransport(transport)
+                            .withReadTimeout(200)
+                            .build())
+                    .build();
+            long start = System.nanoTime();
+            try {
+                stalled.submit(jobs(1).get(0));
+                fail("Expected a read timeout");
+            } catch (SocketTimeoutException e) {
+                assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 4_000);
+            }
+        }
+    }
+
+    @Test
+    public void reopensIdleConnections() throws Exception {
+        client = client()
+                .withTransportOptions(FaktoryTransportOptions.builder().withIdleTimeout(50).build())
+                .withConnectionPoolSize(1)
+                .build();
+        client.submit(jobs(1).get(0));
+        Thread.sleep(100);
+        client.submit(jobs(1).get(0));
+        assertEquals(2, server.count("HELLO"));
+        assertEquals(2, server.queueSize("default"));
+    }
+
+    @Test
+    public void reconnectsAndReportsJobsFinishedWhileDisconnected() throws Exception {
+        client = client().withReconnectBackoff(10, 100).build();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        client.register("TestJob", job -> {
+            running.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        client.submitAll(jobs(4));
+
+        start();
+        waitFor(() -> running.get() == 4);
+
+        int hellos = server.count("HELLO");
+        server.dropNext("HELLO", 2);
+        server.dropAllConnections();
+        release.countDown();
+
+        waitFor(() -> server.reservedSize() == 0);
+        assertEquals(0, server.queueSize("default"));
+        assertTrue(server.getFailures().isEmpty());
+        assertTrue(server.count("HELLO") > hellos + 2);
+        assertTrue(runner.isAlive());
+    }
+
+    @Test
+    public void resendsReportsCutOffByADroppedConnection() throws Exception {
+        client = client().withReconnectBackoff(10, 100).build();
+        client.register("TestJob", job -> {
+        });
+        server.dropNext("ACK", 2);
+        client.submitAll(jobs(20));
+
+        start();
+
+        waitFor(() -> server.reservedSize() == 0 && server.queueSize("default") == 0);
+        assertTrue(server.count("ACK") >= 22);
+        assertTrue(runner.isAlive());
+    }
+
+    @Test
+    public void spoolsSubmitsWhileFaktoryIsUnreachable() throws Exception {
+        Path directory = Files.createTempDirectory("faktory-spool");
+        server.dropNext("HELLO", 3);
+        server.dropNext("PUSH", 1);
+        FaktoryClient producer = client()
+                .withSpool(FaktorySpoolOptions.builder().withDirectory(directory).build())
+                .build();
+        try {
+            for (FaktoryJob job : jobs(50)) {
+                producer.submit(job);
+            }
+            waitFor(() -> server.queueSize("default") == 50);
+            waitFor(() -> producer.getSpool().size() == 0);
+        } finally {
+            producer.getSpool().close();
+        }
+    }
+
+    @Test
+    public void keepsSpooledJobsWhenHandshakeFails() throws Exception {
+        Path directory = Files.createTempDirectory("faktory-spool");
+        server.failNext("HELLO", "Invalid password");
+        server.failNext("HELLO", "Invalid password");
+        FaktoryClient producer = client()
+                .withSpool(FaktorySpoolOptions.builder().withDirectory(directory).build())
+                .build();
+        try {
+            for (FaktoryJob job : jobs(20)) {
+                producer.submit(job);
+            }
+            waitFor(() -> server.count("HELLO") >= 1);
+            assertEquals(20, producer.getSpool().size());
+            waitFor(() -> server.queueSize("default") == 20);
+            waitFor(() -> producer.getSpool().size() == 0);
+        } finally {
+            producer.getSpool().close();
+        }
+    }
+
+    private FaktoryClient.Builder client() {
+        return FaktoryClient.builder()
+                .withUri(server.getUri())
+                .withWorkerId("test-worker")
+                .withConcurrency(4)
+                // handlers in these tests block, so every slot needs its own thread
+                .withExecutorStrategy(FaktoryExecutorStrategy.fixed())
+                .withHeartbeatInterval(1);
+    }
+
+    private void start() {
+        runner = new Thread(() -> {
+            try {
+                client.run();
+            } catch (Exception e) {
+                runError.set(e);
+            }
+        }, "faktory-client-test");
+        runner.start();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Condition not met in time", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    public static class Greeting {
+
+        public String name;
+        public int times;
+    }
+
+    private static List<FaktoryJob> jobs(int count) {
+        List<FaktoryJob> jobs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            jobs.add(FaktoryJob.builder()
+                    .withJobId(String.valueOf(i))
+                    .withJobType("TestJob")
+                    .withArgs(Collections.singletonList(i))
+                    .build());
+        }
+        return jobs;
+    }
+}
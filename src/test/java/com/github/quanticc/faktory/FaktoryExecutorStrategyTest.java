@@ -0,0 +1,128 @@
+package com.github.quanticc.faktory;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FaktoryExecutorStrategyTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fixedRejectsNonPositiveThreadCount() {
+        FaktoryExecutorStrategy.fixed(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fixedRejectsFewerThreadsThanConcurrency() {
+        FaktoryExecutorStrategy.fixed(2).validate(4);
+    }
+
+    @Test
+    public void fixedCreatesPoolOfRequestedSize() {
+        FaktoryExecutorStrategy.fixed(8).validate(4);
+        assertPoolSize(8, FaktoryExecutorStrategy.fixed(8).create(4));
+        assertPoolSize(4, FaktoryExecutorStrategy.fixed().create(4));
+    }
+
+    @Test
+    public void workStealingAcceptsConcurrencyAboveParallelism() {
+        FaktoryExecutorStrategy strategy = FaktoryExecutorStrategy.workStealing();
+        strategy.validate(Runtime.getRuntime().availableProcessors() * 4);
+        ExecutorService executor = strategy.create(4);
+        try {
+            assertTrue(executor instanceof ForkJoinPool);
+            assertTrue(strategy.isShutdownWithClient());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void clientDefaultsToWorkStealing() {
+        assertEquals("workStealing", FaktoryClient.builder().getExecutorStrategy().toString());
+    }
+
+    @Test
+    public void virtualThreadsFallBackToFixedPoolWithoutLoom() throws Exception {
+        FaktoryExecutorStrategy strategy = FaktoryExecutorStrategy.virtualThreads();
+        ExecutorService executor = strategy.create(3);
+        try {
+            if (hasVirtualThreads()) {
+                assertFalse(executor instanceof ThreadPoolExecutor);
+            } else {
+                assertEquals(3, ((ThreadPoolExecutor) executor).getMaximumPoolSize());
+            }
+            CountDownLatch ran = new CountDownLatch(1);
+            executor.execute(ran::countDown);
+            assertTrue(ran.await(10, TimeUnit.SECONDS));
+            assertTrue(strategy.isShutdownWithClient());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void suppliedExecutorIsNotShutDownByTheClient() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (FakeFaktoryServer server = new FakeFaktoryServer().start()) {
+            FaktoryClient client = FaktoryClient.builder()
+                    .withUri(server.getUri())
+                    .withWorkerId("test-worker")
+                    .withConcurrency(4)
+                    .withExecutor(executor)
+                    .build();
+            CountDownLatch processed = new CountDownLatch(1);
+            client.register("TestJob", job -> processed.countDown());
+            client.submit(FaktoryJob.builder().withJobId("1").withJobType("TestJob").build());
+            Thread runner = new Thread(() -> {
+                try {
+                    client.run();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }, "faktory-client-test");
+            runner.start();
+
+            assertTrue(processed.await(10, TimeUnit.SECONDS));
+            client.disconnect(false, 5);
+            runner.join(TimeUnit.SECONDS.toMillis(10));
+            assertFalse("run() did not return", runner.isAlive());
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void suppliedExecutorMustAllowConcurrency() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            FaktoryExecutorStrategy.of(executor).validate(4);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void assertPoolSize(int expected, ExecutorService executor) {
+        try {
+            assertEquals(expected, ((ThreadPoolExecutor) executor).getMaximumPoolSize());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static boolean hasVirtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
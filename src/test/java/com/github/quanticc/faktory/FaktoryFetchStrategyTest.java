@@ -0,0 +1,77 @@
+package com.github.quanticc.faktory;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class FaktoryFetchStrategyTest {
+
+    private static final List<String> QUEUES = Arrays.asList("critical", "default", "low");
+
+    @Test
+    public void strictKeepsConfiguredOrder() {
+        FaktoryFetchStrategy strategy = FaktoryFetchStrategy.strict();
+        assertEquals(QUEUES, strategy.select(QUEUES));
+        assertEquals(QUEUES, strategy.select(QUEUES));
+    }
+
+    @Test
+    public void roundRobinRotatesFirstQueue() {
+        FaktoryFetchStrategy strategy = FaktoryFetchStrategy.roundRobin();
+        assertEquals(QUEUES, strategy.select(QUEUES));
+        assertEquals(Arrays.asList("default", "low", "critical"), strategy.select(QUEUES));
+        assertEquals(Arrays.asList("low", "critical", "default"), strategy.select(QUEUES));
+        assertEquals(QUEUES, strategy.select(QUEUES));
+    }
+
+    @Test
+    public void weightedPicksFirstQueueByWeight() {
+        Map<String, Integer> weights = new HashMap<>();
+        weights.put("critical", 6);
+        weights.put("default", 3);
+        FaktoryFetchStrategy strategy = FaktoryFetchStrategy.weighted(weights);
+        Map<String, Integer> first = new HashMap<>();
+        int draws = 20_000;
+        for (int i = 0; i < draws; i++) {
+            List<String> order = strategy.select(QUEUES);
+            assertEquals(new HashSet<>(QUEUES), new HashSet<>(order));
+            assertEquals(QUEUES.size(), order.size());
+            first.merge(order.get(0), 1, Integer::sum);
+        }
+        assertEquals(0.6, first.get("critical") / (double) draws, 0.03);
+        assertEquals(0.3, first.get("default") / (double) draws, 0.03);
+        assertEquals(0.1, first.get("low") / (double) draws, 0.03);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void weightedRejectsNonPositiveWeights() {
+        FaktoryFetchStrategy.weighted(Collections.singletonMap("low", 0));
+    }
+
+    @Test
+    public void backoffSkipsEmptyQueuesUntilExpired() throws InterruptedException {
+        FaktoryFetchStrategy strategy = FaktoryFetchStrategy.emptyQueueBackoff(FaktoryFetchStrategy.strict(), 100);
+        strategy.fetched(Arrays.asList("critical", "default"), null);
+        assertEquals(Collections.singletonList("low"), strategy.select(QUEUES));
+
+        strategy.fetched(Collections.singletonList("low"), FaktoryJob.builder().withJobId("1").withJobType("TestJob").build());
+        assertEquals(Collections.singletonList("low"), strategy.select(QUEUES));
+
+        Thread.sleep(150);
+        assertEquals(QUEUES, strategy.select(QUEUES));
+    }
+
+    @Test
+    public void backoffFetchesEveryQueueWhenAllAreEmpty() {
+        FaktoryFetchStrategy strategy = FaktoryFetchStrategy.emptyQueueBackoff(FaktoryFetchStrategy.strict(), 60_000);
+        strategy.fetched(QUEUES, null);
+        assertEquals(QUEUES, strategy.select(QUEUES));
+    }
+}
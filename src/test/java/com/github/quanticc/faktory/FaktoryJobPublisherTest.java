@@ -0,0 +1,177 @@
+package com.github.quanticc.faktory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+public class FaktoryJobPublisherTest {
+
+    private FakeFaktoryServer server;
+    private FaktoryClient client;
+    private FaktoryJobPublisher publisher;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeFaktoryServer().start();
+        client = FaktoryClient.builder()
+                .withUri(server.getUri())
+                .withWorkerId("publisher")
+                .withShutdownHook(false)
+                .withHeartbeatInterval(1)
+                .build();
+        publisher = client.publisher();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        publisher.close();
+        server.close();
+    }
+
+    @Test
+    public void fetchesOnlyWhatWasRequested() throws Exception {
+        client.submitAll(jobs(10));
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        subscriber.subscription.request(3);
+
+        waitFor(() -> subscriber.deliveries.size() == 3);
+        Thread.sleep(200);
+        assertEquals(3, subscriber.deliveries.size());
+        assertEquals(3, server.count("FETCH"));
+        assertEquals(7, server.queueSize("default"));
+        assertEquals(0, publisher.getDemand());
+    }
+
+    @Test
+    public void reportsDeliveriesAsynchronously() throws Exception {
+        client.submitAll(jobs(4));
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(4);
+        waitFor(() -> subscriber.deliveries.size() == 4);
+
+        CompletableFuture<Void> work = new CompletableFuture<>();
+        List<CompletableFuture<Void>> reported = new ArrayList<>();
+        reported.add(subscriber.deliveries.take().ack());
+        reported.add(subscriber.deliveries.take().fail(new IllegalStateException("bad input")));
+        FaktoryDelivery pendingWork = subscriber.deliveries.take();
+        reported.add(pendingWork.completeWith(work));
+        FaktoryDelivery failedWork = subscriber.deliveries.take();
+        CompletableFuture<Void> failing = new CompletableFuture<>();
+        reported.add(failedWork.completeWith(failing));
+        failing.completeExceptionally(new IllegalArgumentException("no such user"));
+        new Thread(() -> work.complete(null)).start();
+
+        CompletableFuture.allOf(reported.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+        assertEquals(2, server.count("ACK"));
+        assertEquals(2, server.getFailures().size());
+        assertEquals(0, server.reservedSize());
+        assertTrue(pendingWork.ack().isCompletedExceptionally());
+    }
+
+    @Test
+    public void cancelStopsFetching() throws Exception {
+        client.submitAll(jobs(5));
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        waitFor(() -> subscriber.deliveries.size() >= 1);
+        subscriber.subscription.cancel();
+        int fetched = server.count("FETCH");
+        Thread.sleep(200);
+
+        assertTrue(server.count("FETCH") <= fetched + 1);
+        assertNull(subscriber.error.get());
+        publisher.close();
+        assertEquals(0, subscriber.completions.get());
+    }
+
+    @Test
+    public void closeCompletesTheSubscriber() throws Exception {
+        client.submitAll(jobs(1));
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        waitFor(() -> subscriber.deliveries.size() == 1);
+
+        publisher.close();
+
+        waitFor(() -> subscriber.completions.get() == 1);
+        Thread.sleep(200);
+        assertEquals(1, subscriber.completions.get());
+        assertNull(subscriber.error.get());
+    }
+
+    @Test
+    public void rejectsNonPositiveRequests() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        subscriber.subscription.request(0);
+
+        waitFor(() -> subscriber.error.get() != null);
+        assertTrue(subscriber.error.get() instanceof IllegalArgumentException);
+    }
+
+    private static List<FaktoryJob> jobs(int count) {
+        List<FaktoryJob> jobs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            jobs.add(FaktoryJob.builder().withJobId(String.valueOf(i)).withJobType("TestJob").build());
+        }
+        return jobs;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Condition not met in time", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static class RecordingSubscriber implements Subscriber<FaktoryDelivery> {
+
+        private final BlockingQueue<FaktoryDelivery> deliveries = new LinkedBlockingQueue<>();
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+        private final AtomicInteger completions = new AtomicInteger();
+        private volatile Subscription subscription;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(FaktoryDelivery delivery) {
+            deliveries.add(delivery);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error.set(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completions.incrementAndGet();
+        }
+    }
+}
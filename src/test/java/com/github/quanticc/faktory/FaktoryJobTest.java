@@ -0,0 +1,141 @@
+package com.github.quanticc.faktory;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class FaktoryJobTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void lazyJobReadsIdAndTypeUpFront() throws IOException {
+        FaktoryJob job = lazy("{\"queue\":\"default\",\"jid\":\"abc\",\"retry\":{\"n\":[1,2]},"
+                + "\"args\":[1,\"two\",{\"three\":[3]}],\"jobtype\":\"Test\",\"custom\":{\"trace\":\"t-1\"}}");
+        assertEquals("abc", job.getJobId());
+        assertEquals("Test", job.getJobType());
+        assertEquals(Arrays.asList(1, "two", Collections.singletonMap("three", Collections.singletonList(3))),
+                job.getArgs());
+        assertEquals(Collections.singletonMap("trace", "t-1"), job.getCustom());
+    }
+
+    @Test
+    public void lazyJobParsesArgsOnce() throws IOException {
+        FaktoryJob job = lazy("{\"jid\":\"abc\",\"jobtype\":\"Test\",\"args\":[\"a]\\\"}\"]}");
+        assertSame(job.getArgs(), job.getArgs());
+        assertEquals(Collections.singletonList("a]\"}"), job.getArgs());
+        assertNull(job.getCustom());
+    }
+
+    @Test
+    public void lazyJobStreamsArgs() throws IOException {
+        FaktoryJob job = lazy("{\"jid\":\"abc\",\"jobtype\":\"Test\",\"args\":[7,8]}");
+        try (JsonParser parser = job.getArgsParser()) {
+            assertEquals(JsonToken.START_ARRAY, parser.nextToken());
+            assertEquals(JsonToken.VALUE_NUMBER_INT, parser.nextToken());
+            assertEquals(7, parser.getIntValue());
+        }
+    }
+
+    @Test
+    public void lazyJobWithoutArgs() throws IOException {
+        assertEquals(Collections.emptyList(), lazy("{\"jid\":\"abc\",\"jobtype\":\"Test\"}").getArgs());
+        assertEquals(Collections.emptyList(), lazy("{\"jid\":\"abc\",\"jobtype\":\"Test\",\"args\":null}").getArgs());
+    }
+
+    @Test
+    public void lazyJobKeepsItsOwnCopy() throws IOException {
+        byte[] reply = "xx{\"jid\":\"abc\",\"jobtype\":\"Test\",\"args\":[1]}yy".getBytes(StandardCharsets.UTF_8);
+        FaktoryJob job = FaktoryJob.lazy(objectMapper, reply, 2, reply.length - 4);
+        Arrays.fill(reply, (byte) ' ');
+        assertEquals(Collections.singletonList(1), job.getArgs());
+    }
+
+    @Test
+    public void lazyJobSerializesLikeEagerJob() throws IOException {
+        String json = "{\"jid\":\"abc\",\"jobtype\":\"Test\",\"args\":[1,2],\"custom\":{\"k\":\"v\"}}";
+        FaktoryJob eager = objectMapper.readValue(json, FaktoryJob.class);
+        assertEquals(objectMapper.writeValueAsString(eager), objectMapper.writeValueAsString(lazy(json)));
+    }
+
+    @Test(expected = IOException.class)
+    public void lazyJobRequiresIdAndType() throws IOException {
+        lazy("{\"jobtype\":\"Test\",\"args\":[]}");
+    }
+
+    @Test
+    public void readsArgsAsTokens() throws IOException {
+        FaktoryJob job = objectMapper.readValue("{\"jid\":\"abc\",\"jobtype\":\"Test\",\"args\":[{\"a\":1}]}",
+                FaktoryJob.class);
+        assertNotNull(job.getArgsParser());
+        Map<?, ?> first = (Map<?, ?>) job.getArgs().get(0);
+        assertEquals(1, first.get("a"));
+        assertNull(FaktoryJob.builder().withJobId("1").withJobType("Test").build().getArgsParser());
+    }
+
+    @Test
+    public void readsFullSchema() throws IOException {
+        String json = "{\"jid\":\"abc\",\"jobtype\":\"Test\",\"queue\":\"critical\",\"args\":[1],"
+                + "\"custom\":{\"k\":\"v\"},\"reserve_for\":600,\"at\":\"2030-01-01T00:00:00Z\",\"retry\":3,"
+                + "\"priority\":9,\"backtrace\":10,\"created_at\":\"2029-12-31T00:00:00Z\","
+                + "\"enqueued_at\":\"2029-12-31T00:00:01Z\",\"failure\":{\"message\":\"x\"}}";
+        for (FaktoryJob job : Arrays.asList(objectMapper.readValue(json, FaktoryJob.class), lazy(json))) {
+            assertEquals("critical", job.getQueue());
+            assertEquals(Integer.valueOf(600), job.getReserveFor());
+            assertEquals("2030-01-01T00:00:00Z", job.getAt());
+            assertEquals(Integer.valueOf(3), job.getRetry());
+            assertEquals(Integer.valueOf(9), job.getPriority());
+            assertEquals(Integer.valueOf(10), job.getBacktrace());
+            assertEquals("2029-12-31T00:00:00Z", job.getCreatedAt());
+            assertEquals("2029-12-31T00:00:01Z", job.getEnqueuedAt());
+            assertEquals(json.substring(0, json.indexOf(",\"failure\"")) + "}", objectMapper.writeValueAsString(job));
+        }
+    }
+
+    @Test
+    public void writesOnlySetFields() throws IOException {
+        FaktoryJob job = FaktoryJob.builder()
+                .withJobId("abc")
+                .withJobType("Test")
+                .withAt(Instant.parse("2030-01-01T00:00:00Z"))
+                .withRetry(0)
+                .build();
+        assertEquals("{\"jid\":\"abc\",\"jobtype\":\"Test\",\"args\":[],\"at\":\"2030-01-01T00:00:00Z\","
+                + "\"retry\":0}", objectMapper.writeValueAsString(job));
+    }
+
+    @Test
+    public void copiesUnreadArgsWhenWriting() throws IOException {
+        String json = "{\"jid\":\"abc\",\"jobtype\":\"Test\",\"args\":[{\"a\":[1,2.5,\"x\",null,true]}]}";
+        assertEquals(json, objectMapper.writeValueAsString(objectMapper.readValue(json, FaktoryJob.class)));
+        assertEquals(json, objectMapper.writeValueAsString(lazy(json)));
+    }
+
+    private FaktoryJob lazy(String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return FaktoryJob.lazy(objectMapper, bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void toBuilderCopiesCustom() throws IOException {
+        FaktoryJob job = lazy("{\"jid\":\"1\",\"jobtype\":\"Test\",\"queue\":\"q\",\"args\":[1],"
+                + "\"custom\":{\"a\":1}}");
+        FaktoryJob copy = job.toBuilder().putCustom("b", 2).build();
+
+        assertEquals("1", copy.getJobId());
+        assertEquals("q", copy.getQueue());
+        assertEquals(Collections.singletonList(1), copy.getArgs());
+        assertEquals(2, copy.getCustom().size());
+        assertEquals(1, job.getCustom().size());
+    }
+}
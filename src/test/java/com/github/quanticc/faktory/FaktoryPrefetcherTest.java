@@ -0,0 +1,71 @@
+package com.github.quanticc.faktory;
+
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FaktoryPrefetcherTest {
+
+    private final FaktoryConnectionPool pool = new FaktoryConnectionPool(URI.create("tcp://localhost:7419"), 1,
+            connection -> {
+            });
+
+    @Test
+    public void returnsJobsFetchedAfterStop() throws Exception {
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingQueue<FaktoryJob> returned = new LinkedBlockingQueue<>();
+        FaktoryPrefetcher prefetcher = new FaktoryPrefetcher(pool, () -> {
+            fetching.countDown();
+            await(release);
+            return job("late", null);
+        }, 1, 60, () -> {
+        }, returned::add);
+        prefetcher.start();
+        assertTrue(fetching.await(10, TimeUnit.SECONDS));
+
+        assertTrue(prefetcher.stop(50).isEmpty());
+        release.countDown();
+
+        FaktoryJob job = returned.poll(10, TimeUnit.SECONDS);
+        assertNotNull("late job was not returned", job);
+        assertEquals("late", job.getJobId());
+        assertEquals(0, prefetcher.size());
+    }
+
+    @Test
+    public void stopSkipsExpiredJobs() throws Exception {
+        BlockingQueue<FaktoryJob> jobs = new LinkedBlockingQueue<>();
+        jobs.add(job("expired", 0));
+        jobs.add(job("reserved", 60));
+        CountDownLatch buffered = new CountDownLatch(2);
+        FaktoryPrefetcher prefetcher = new FaktoryPrefetcher(pool, jobs::poll, 2, 60, buffered::countDown,
+                job -> fail("unexpected return of " + job.getJobId()));
+        prefetcher.start();
+        assertTrue(buffered.await(10, TimeUnit.SECONDS));
+
+        List<FaktoryJob> remaining = prefetcher.stop(5000);
+        assertEquals(1, remaining.size());
+        assertEquals("reserved", remaining.get(0).getJobId());
+    }
+
+    private static void await(CountDownLatch latch) throws InterruptedIOException {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    private static FaktoryJob job(String jid, Integer reserveFor) {
+        return FaktoryJob.builder().withJobId(jid).withJobType("TestJob").withReserveFor(reserveFor).build();
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.quanticc.faktory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FaktoryPushPipelineTest {
+
+    private FakeFaktoryServer server;
+    private FaktoryConnectionPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeFaktoryServer().start();
+        pool = new FaktoryConnectionPool(server.getUri(), 1, connection -> {
+            connection.handshake();
+            connection.connect("{\"v\":2}");
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.close();
+        server.close();
+    }
+
+    @Test
+    public void pushesInOneConnection() throws Exception {
+        FaktoryPushPipeline pipeline = pipeline(16);
+        CompletableFuture.allOf(pipeline.pushAll(jobs(50))).get(10, TimeUnit.SECONDS);
+        assertEquals(50, server.queueSize("default"));
+        assertEquals(1, server.count("HELLO"));
+        pipeline.close();
+    }
+
+    @Test
+    public void pushWaitsWhileTheInFlightLimitIsReached() throws Exception {
+        server.withLatency(300);
+        FaktoryPushPipeline pipeline = pipeline(2);
+        List<FaktoryJob> jobs = jobs(3);
+        CompletableFuture<Void> first = pipeline.push(jobs.get(0));
+        CompletableFuture<Void> second = pipeline.push(jobs.get(1));
+        assertFalse(first.isDone() || second.isDone());
+
+        CompletableFuture<Void> third = pipeline.push(jobs.get(2));
+        // the third push only gets a permit once a reply frees one
+        assertTrue(first.isDone());
+        CompletableFuture.allOf(second, third).get(10, TimeUnit.SECONDS);
+        assertEquals(3, server.queueSize("default"));
+        pipeline.close();
+    }
+
+    @Test
+    public void errorRepliesRejectTheMatchingJob() throws Exception {
+        server.failNext("PUSH", "queue is full");
+        FaktoryPushPipeline pipeline = pipeline(16);
+        CompletableFuture<?>[] results = pipeline.pushAll(jobs(3));
+        try {
+            results[0].get(10, TimeUnit.SECONDS);
+            fail("Expected the first push to be rejected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof FaktoryJobRejectedError);
+            assertEquals("-ERR queue is full", e.getCause().getMessage());
+        }
+        results[1].get(10, TimeUnit.SECONDS);
+        results[2].get(10, TimeUnit.SECONDS);
+        assertEquals(2, server.queueSize("default"));
+        pipeline.close();
+    }
+
+    private FaktoryPushPipeline pipeline(int maxInFlight) {
+        return new FaktoryPushPipeline(pool, new ObjectMapper().writerFor(FaktoryJob.class), maxInFlight);
+    }
+
+    private static List<FaktoryJob> jobs(int count) {
+        List<FaktoryJob> jobs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            jobs.add(FaktoryJob.builder().withJobId(String.valueOf(i)).withJobType("TestJob").build());
+        }
+        return jobs;
+    }
+}
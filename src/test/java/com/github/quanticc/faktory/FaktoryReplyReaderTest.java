@@ -0,0 +1,195 @@
+package com.github.quanticc.faktory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FaktoryReplyReaderTest {
+
+    @Test
+    public void readsSimpleStringWithTypePrefix() throws IOException {
+        FaktoryReplyReader reader = reader("+OK\r\n", 64);
+        assertEquals(FaktoryReplyReader.SIMPLE, reader.read());
+        assertEquals("+OK", reader.text());
+    }
+
+    @Test
+    public void readsErrorReply() throws IOException {
+        FaktoryReplyReader reader = reader("-ERR Unknown command\r\n", 64);
+        assertEquals(FaktoryReplyReader.ERROR, reader.read());
+        assertEquals("-ERR Unknown command", reader.text());
+    }
+
+    @Test
+    public void readsNilBulkString() throws IOException {
+        FaktoryReplyReader reader = reader("$-1\r\n+OK\r\n", 64);
+        assertEquals(FaktoryReplyReader.NIL, reader.read());
+        assertEquals(FaktoryReplyReader.SIMPLE, reader.read());
+    }
+
+    @Test
+    public void readsEmptyBulkString() throws IOException {
+        FaktoryReplyReader reader = reader("$0\r\n\r\n", 64);
+        assertEquals(FaktoryReplyReader.BULK, reader.read());
+        assertEquals(0, reader.length());
+    }
+
+    @Test
+    public void readsBulkStringContainingCrlf() throws IOException {
+        FaktoryReplyReader reader = reader("$8\r\nab\r\ncd\r\n\r\n+OK\r\n", 64);
+        assertEquals(FaktoryReplyReader.BULK, reader.read());
+        assertEquals("ab\r\ncd\r\n", reader.text());
+        assertEquals(FaktoryReplyReader.SIMPLE, reader.read());
+        assertEquals("+OK", reader.text());
+    }
+
+    @Test
+    public void readsPipelinedRepliesFromSingleChunk() throws IOException {
+        FaktoryReplyReader reader = reader("+OK\r\n$3\r\nabc\r\n-ERR x\r\n$-1\r\n", 1024);
+        assertEquals(FaktoryReplyReader.SIMPLE, reader.read());
+        assertEquals(FaktoryReplyReader.BULK, reader.read());
+        assertEquals("abc", reader.text());
+        assertEquals(FaktoryReplyReader.ERROR, reader.read());
+        assertEquals(FaktoryReplyReader.NIL, reader.read());
+    }
+
+    @Test
+    public void readsRepliesDeliveredOneByteAtATime() throws IOException {
+        String json = "{\"jid\":\"123\",\"jobtype\":\"TestJob\",\"args\":[1,2]}";
+        FaktoryReplyReader reader = reader("+HI {\"v\":2}\r\n$" + json.length() + "\r\n" + json + "\r\n", 1);
+        assertEquals(FaktoryReplyReader.SIMPLE, reader.read());
+        assertEquals("+HI {\"v\":2}", reader.text());
+        assertEquals(FaktoryReplyReader.BULK, reader.read());
+        assertEquals(json, reader.text());
+    }
+
+    @Test
+    public void readsCrlfSplitAcrossReads() throws IOException {
+        FaktoryReplyReader reader = new FaktoryReplyReader(new ChunkedChannel("+OK\r\n$2\r\nab\r\n", 4, 4, 4, 1), 16);
+        assertEquals(FaktoryReplyReader.SIMPLE, reader.read());
+        assertEquals("+OK", reader.text());
+        assertEquals(FaktoryReplyReader.BULK, reader.read());
+        assertEquals("ab", reader.text());
+    }
+
+    @Test
+    public void readsMultiByteCharactersSplitAcrossReads() throws IOException {
+        String payload = "\"caf\u00e9 \u2603\"";
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        FaktoryReplyReader reader = reader("$" + bytes.length + "\r\n" + payload + "\r\n", 3);
+        assertEquals(FaktoryReplyReader.BULK, reader.read());
+        assertEquals(payload, reader.text());
+    }
+
+    @Test
+    public void growsBufferForLargeBulkStringInSmallFragments() throws IOException {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 20000; i++) {
+            sb.append(i).append(',');
+        }
+        sb.append("0]");
+        String json = sb.toString();
+        assertTrue(json.length() > 100_000);
+
+        FaktoryReplyReader reader = reader("$" + json.length() + "\r\n" + json + "\r\n+OK\r\n", 1500);
+        assertEquals(FaktoryReplyReader.BULK, reader.read());
+        assertEquals(json.length(), reader.length());
+
+        int[] values = new ObjectMapper().readValue(reader.array(), reader.offset(), reader.length(), int[].class);
+        assertEquals(20001, values.length);
+        assertEquals(19999, values[19999]);
+
+        assertEquals(FaktoryReplyReader.SIMPLE, reader.read());
+        assertEquals("+OK", reader.text());
+    }
+
+    @Test
+    public void bindsBulkReplyWithJacksonFromBufferSlice() throws IOException {
+        String json = "{\"state\":\"quiet\"}";
+        FaktoryReplyReader reader = reader("+OK\r\n$" + json.length() + "\r\n" + json + "\r\n", 7);
+        reader.read();
+        reader.read();
+        Map<?, ?> map = new ObjectMapper().readValue(reader.array(), reader.offset(), reader.length(), Map.class);
+        assertEquals("quiet", map.get("state"));
+    }
+
+    @Test
+    public void reusesBufferAcrossReplies() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("$5\r\nhello\r\n");
+        }
+        FaktoryReplyReader reader = new FaktoryReplyReader(new ChunkedChannel(sb.toString(), 100), 64);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(FaktoryReplyReader.BULK, reader.read());
+            assertEquals("hello", reader.text());
+        }
+        assertEquals(64, reader.capacity());
+    }
+
+    @Test(expected = EOFException.class)
+    public void failsWhenConnectionClosesMidReply() throws IOException {
+        reader("$10\r\nabc", 4).read();
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsUnknownReplyType() throws IOException {
+        reader(":1\r\n", 64).read();
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsBulkStringWithoutTrailingCrlf() throws IOException {
+        reader("$3\r\nabcd\r\n+OK\r\n", 64).read();
+    }
+
+    private static FaktoryReplyReader reader(String content, int chunkSize) {
+        return new FaktoryReplyReader(new ChunkedChannel(content, chunkSize), 64);
+    }
+
+    /**
+     * Delivers the content in chunks of the given sizes, repeating the last size, simulating replies that
+     * arrive fragmented over several reads.
+     */
+    private static class ChunkedChannel implements ReadableByteChannel {
+
+        private final ByteBuffer content;
+        private final int[] chunkSizes;
+        private int reads;
+
+        ChunkedChannel(String content, int... chunkSizes) {
+            this.content = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+            this.chunkSizes = chunkSizes;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!content.hasRemaining()) {
+                return -1;
+            }
+            int size = chunkSizes[Math.min(reads++, chunkSizes.length - 1)];
+            int n = Math.min(Math.min(size, content.remaining()), dst.remaining());
+            for (int i = 0; i < n; i++) {
+                dst.put(content.get());
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
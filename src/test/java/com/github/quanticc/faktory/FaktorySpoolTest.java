@@ -0,0 +1,256 @@
+package com.github.quanticc.faktory;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+public class FaktorySpoolTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> pushed = Collections.synchronizedList(new ArrayList<>());
+    private final List<FaktorySpool> spools = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (FaktorySpool spool : spools) {
+            spool.close();
+        }
+    }
+
+    @Test
+    public void drainsJobsInOrder() throws Exception {
+        FaktorySpool spool = open(options().build(), this::accept);
+        spool.start();
+        for (int i = 0; i < 100; i++) {
+            spool.append(job(i));
+        }
+
+        waitFor(() -> pushed.size() == 100);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(json(i), pushed.get(i));
+        }
+        waitFor(() -> spool.size() == 0);
+    }
+
+    @Test
+    public void rollsAndDeletesDrainedSegments() throws Exception {
+        FaktorySpool spool = open(options().withSegmentSize(256).build(), this::accept);
+        for (int i = 0; i < 40; i++) {
+            spool.append(job(i));
+        }
+        assertTrue(segmentFiles().size() > 5);
+
+        spool.start();
+
+        waitFor(() -> pushed.size() == 40);
+        waitFor(() -> segmentFiles().size() == 1);
+        assertEquals(0, spool.size());
+    }
+
+    @Test
+    public void unmapsDeletedSegments() throws Exception {
+        Path maps = Paths.get("/proc/self/maps");
+        Assume.assumeTrue(Files.isReadable(maps));
+        FaktorySpool spool = open(options().withSegmentSize(4096).build(), this::accept);
+        for (int i = 0; i < 400; i++) {
+            spool.append(job(i));
+        }
+        assertTrue(mappedSegments(maps) > 5);
+
+        spool.start();
+
+        waitFor(() -> pushed.size() == 400);
+        waitFor(() -> segmentFiles().size() == 1);
+        assertEquals(1, mappedSegments(maps));
+    }
+
+    @Test
+    public void rejectsJobsWhenFull() throws Exception {
+        FaktorySpool spool = open(options().withSegmentSize(256).withMaxSegments(2).build(), this::accept);
+        try {
+            for (int i = 0; i < 40; i++) {
+                spool.append(job(i));
+            }
+            fail("Expected the spool to fill up");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("full"));
+        }
+    }
+
+    @Test
+    public void recoversJobsAfterCrash() throws Exception {
+        FaktorySpoolOptions options = options().withSegmentSize(512).build();
+        FaktorySpool crashed = FaktorySpool.open(options, this::accept);
+        for (int i = 0; i < 20; i++) {
+            crashed.append(job(i));
+        }
+        // never closed, as if the process died
+
+        FaktorySpool recovered = open(options, this::accept);
+        assertEquals(20, recovered.size());
+        recovered.append(job(20));
+        recovered.start();
+
+        waitFor(() -> pushed.size() == 21);
+        for (int i = 0; i <= 20; i++) {
+            assertEquals(json(i), pushed.get(i));
+        }
+    }
+
+    @Test
+    public void skipsJobsAcknowledgedBeforeCrash() throws Exception {
+        FaktorySpoolOptions options = options().withDrainBatchSize(5).build();
+        AtomicInteger accepted = new AtomicInteger();
+        FaktorySpool crashed = open(options, jobs -> {
+            // Faktory goes away after the first two batches
+            CompletableFuture<?>[] results = new CompletableFuture<?>[jobs.size()];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = new CompletableFuture<>();
+                if (accepted.get() < 10) {
+                    accepted.incrementAndGet();
+                    results[i].complete(null);
+                } else {
+                    results[i].completeExceptionally(new IOException("Connection refused"));
+                }
+            }
+            return results;
+        });
+        for (int i = 0; i < 30; i++) {
+            crashed.append(job(i));
+        }
+        crashed.start();
+        waitFor(() -> crashed.size() == 20);
+        crashed.close();
+
+        FaktorySpool recovered = open(options, this::accept);
+        assertEquals(20, recovered.size());
+        recovered.start();
+
+        waitFor(() -> pushed.size() == 20);
+        assertEquals(json(10), pushed.get(0));
+        assertEquals(json(29), pushed.get(19));
+    }
+
+    @Test
+    public void discardsTornAppend() throws Exception {
+        FaktorySpoolOptions options = options().build();
+        FaktorySpool crashed = FaktorySpool.open(options, this::accept);
+        for (int i = 0; i < 3; i++) {
+            crashed.append(job(i));
+        }
+        // the process died halfway through writing the last job
+        Path segment = segmentFiles().get(0);
+        int lastRecord = 16 + 2 * (8 + job(0).length);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(lastRecord + 8 + 4);
+            file.write(new byte[]{'X', 'X', 'X', 'X'});
+        }
+
+        FaktorySpool recovered = open(options, this::accept);
+        assertEquals(2, recovered.size());
+        recovered.append(job(3));
+        recovered.start();
+
+        waitFor(() -> pushed.size() == 3);
+        assertEquals(json(0), pushed.get(0));
+        assertEquals(json(1), pushed.get(1));
+        assertEquals(json(3), pushed.get(2));
+        waitFor(() -> recovered.size() == 0);
+    }
+
+    @Test
+    public void dropsJobsRejectedByFaktory() throws Exception {
+        FaktorySpool spool = open(options().build(), jobs -> {
+            CompletableFuture<?>[] results = accept(jobs);
+            List<String> list = new ArrayList<>(jobs);
+            for (int i = 0; i < results.length; i++) {
+                if (list.get(i).equals(json(1))) {
+                    results[i] = new CompletableFuture<>();
+                    results[i].completeExceptionally(new FaktoryJobRejectedError("ERR Invalid job"));
+                }
+            }
+            return results;
+        });
+        for (int i = 0; i < 3; i++) {
+            spool.append(job(i));
+        }
+        spool.start();
+
+        waitFor(() -> spool.size() == 0);
+        assertEquals(3, pushed.size());
+    }
+
+    private FaktorySpool open(FaktorySpoolOptions options, FaktorySpool.Sink sink) throws IOException {
+        FaktorySpool spool = FaktorySpool.open(options, sink);
+        spools.add(spool);
+        return spool;
+    }
+
+    private FaktorySpoolOptions.Builder options() {
+        return FaktorySpoolOptions.builder().withDirectory(folder.getRoot().toPath().resolve("spool"));
+    }
+
+    private CompletableFuture<?>[] accept(Collection<String> jobs) {
+        pushed.addAll(jobs);
+        CompletableFuture<?>[] results = new CompletableFuture<?>[jobs.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = CompletableFuture.completedFuture(null);
+        }
+        return results;
+    }
+
+    private long mappedSegments(Path maps) throws IOException {
+        String directory = folder.getRoot().toPath().resolve("spool").toString();
+        return Files.readAllLines(maps).stream().filter(line -> line.contains(directory)).count();
+    }
+
+    private List<Path> segmentFiles() {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder.getRoot().toPath().resolve("spool"))) {
+            for (Path path : stream) {
+                paths.add(path);
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        Collections.sort(paths);
+        return paths;
+    }
+
+    private static String json(int i) {
+        return "{\"jid\":\"" + (1000 + i) + "\",\"jobtype\":\"TestJob\",\"args\":[]}";
+    }
+
+    private static byte[] job(int i) {
+        return json(i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Condition not met in time", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
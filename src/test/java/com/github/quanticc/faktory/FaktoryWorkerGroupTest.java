@@ -0,0 +1,143 @@
+package com.github.quanticc.faktory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class FaktoryWorkerGroupTest {
+
+    private FakeFaktoryServer server;
+    private FaktoryWorkerGroup group;
+    private Thread runner;
+    private final AtomicReference<Exception> runError = new AtomicReference<>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeFaktoryServer().start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (runner != null) {
+            group.disconnect(false, 5);
+            runner.join(TimeUnit.SECONDS.toMillis(10));
+            assertFalse("run() did not return", runner.isAlive());
+            assertNull(runError.get());
+        }
+        server.close();
+    }
+
+    @Test
+    public void shardsShareHandlersAndExecutor() throws Exception {
+        SimpleFaktoryMetrics metrics = new SimpleFaktoryMetrics();
+        group = FaktoryWorkerGroup.builder()
+                .withShards(3)
+                .withClient(client().withMetrics(metrics))
+                .build();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        group.register("TestJob", job -> threads.add(Thread.currentThread().getName()));
+        List<FaktoryJob> jobs = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            jobs.add(FaktoryJob.builder().withJobId(String.valueOf(i)).withJobType("TestJob").build());
+        }
+        group.getShards().get(0).submitAll(jobs);
+
+        start();
+
+        assertTrue(server.awaitReports(60, 10_000));
+        assertEquals(new HashSet<>(Arrays.asList("group-0", "group-1", "group-2")), server.getWorkerIds());
+        assertEquals(60, metrics.getAcked("TestJob"));
+        for (String thread : threads) {
+            assertTrue(thread, thread.startsWith("faktory-worker-"));
+        }
+        for (FaktoryClient shard : group.getShards()) {
+            assertSame(group.getRegistry(), shard.getRegistry());
+        }
+    }
+
+    @Test
+    public void appliesMaxConcurrencyPerShard() throws Exception {
+        SimpleFaktoryMetrics metrics = new SimpleFaktoryMetrics();
+        group = FaktoryWorkerGroup.builder()
+                .withShards(3)
+                .withClient(client().withMetrics(metrics))
+                .build();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger processed = new AtomicInteger();
+        group.register("TestJob", FaktoryTaskOptions.builder().withMaxConcurrency(1).build(), job -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            processed.incrementAndGet();
+        });
+        List<FaktoryJob> jobs = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            jobs.add(FaktoryJob.builder().withJobId(String.valueOf(i)).withJobType("TestJob").build());
+        }
+        group.getShards().get(0).submitAll(jobs);
+
+        start();
+
+        assertTrue(server.awaitReports(150, 10_000));
+        assertEquals(150, processed.get());
+        assertEquals(150, metrics.getAcked("TestJob"));
+        assertTrue("ran " + maxRunning.get() + " at once", maxRunning.get() <= 3);
+        assertTrue(metrics.getBusyWorkers() <= 3 * 4);
+        assertTrue(metrics.getExecutorSaturation() <= 1.0);
+    }
+
+    @Test
+    public void disconnectStopsEveryShard() throws Exception {
+        group = FaktoryWorkerGroup.builder().withShards(2).withClient(client()).build();
+
+        start();
+        group.disconnect(false, 5);
+
+        runner.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(runner.isAlive());
+        assertNull(runError.get());
+        for (FaktoryClient shard : group.getShards()) {
+            assertTrue(shard.isDisconnecting());
+        }
+    }
+
+    private FaktoryClient.Builder client() {
+        return FaktoryClient.builder()
+                .withUri(server.getUri())
+                .withWorkerId("group")
+                .withConcurrency(4)
+                // handlers in these tests block, so every slot needs its own thread
+                .withExecutorStrategy(FaktoryExecutorStrategy.fixed())
+                .withShutdownHook(false)
+                .withHeartbeatInterval(1);
+    }
+
+    private void start() {
+        runner = new Thread(() -> {
+            try {
+                group.run();
+            } catch (Exception e) {
+                runError.set(e);
+            }
+        }, "faktory-group-test");
+        runner.start();
+    }
+}
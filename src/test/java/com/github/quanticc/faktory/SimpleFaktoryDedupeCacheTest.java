@@ -0,0 +1,90 @@
+package com.github.quanticc.faktory;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class SimpleFaktoryDedupeCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    public void skipsRunningAndCompletedKeys() {
+        SimpleFaktoryDedupeCache cache = cache(16, 100);
+        assertTrue(cache.tryAcquire("a"));
+        assertFalse(cache.tryAcquire("a"));
+        assertTrue(cache.tryAcquire("b"));
+
+        cache.release("a", true);
+
+        assertFalse(cache.tryAcquire("a"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void forgetsFailedKeys() {
+        SimpleFaktoryDedupeCache cache = cache(16, 100);
+        assertTrue(cache.tryAcquire("a"));
+        cache.release("a", false);
+
+        assertTrue(cache.tryAcquire("a"));
+    }
+
+    @Test
+    public void expiresKeysAfterTtl() {
+        SimpleFaktoryDedupeCache cache = cache(16, 100);
+        complete(cache, "a");
+        now.set(40);
+        complete(cache, "b");
+
+        now.set(49);
+        assertFalse(cache.tryAcquire("b"));
+        now.set(100);
+        assertTrue(cache.tryAcquire("a"));
+        assertTrue(cache.tryAcquire("b"));
+    }
+
+    @Test
+    public void keepsKeysThatComeBack() {
+        SimpleFaktoryDedupeCache cache = cache(16, 100);
+        complete(cache, "a");
+        now.set(60);
+        assertFalse(cache.tryAcquire("a")); // promoted to the young generation
+        now.set(150);
+        assertFalse(cache.tryAcquire("a"));
+        now.set(300);
+        assertTrue(cache.tryAcquire("a"));
+    }
+
+    @Test
+    public void evictsOldestKeysBeyondCapacity() {
+        SimpleFaktoryDedupeCache cache = cache(4, 1_000_000);
+        for (int i = 0; i < 9; i++) {
+            complete(cache, "job-" + i);
+        }
+
+        assertTrue(cache.tryAcquire("job-0"));
+        for (int i = 5; i < 9; i++) {
+            assertFalse(cache.tryAcquire("job-" + i));
+        }
+        assertTrue(cache.size() <= 2 * 4 + 1);
+    }
+
+    @Test
+    public void hashesNeverCollideWithTheEmptySlot() {
+        for (int i = 0; i < 10_000; i++) {
+            assertNotEquals(0, SimpleFaktoryDedupeCache.hash(String.valueOf(i)));
+        }
+    }
+
+    private SimpleFaktoryDedupeCache cache(int capacity, long ttlNanos) {
+        return new SimpleFaktoryDedupeCache(capacity, ttlNanos, now::get);
+    }
+
+    private static void complete(SimpleFaktoryDedupeCache cache, String key) {
+        assertTrue(cache.tryAcquire(key));
+        cache.release(key, true);
+    }
+}